@@ -1,13 +1,26 @@
 LOCAL_PATH := $(call my-dir)
 
+# HTTP/2: libcurl built with nghttp2 (see BUILD.md), optional
+CURLDROID_NGHTTP2 := $(wildcard $(LOCAL_PATH)/$(TARGET_ARCH_ABI)/libnghttp2.so)
+# TLS session persistence: libcurl built with OpenSSL (see BUILD.md), optional
+CURLDROID_OPENSSL := $(wildcard $(LOCAL_PATH)/$(TARGET_ARCH_ABI)/libssl.so)
+
 include $(CLEAR_VARS)
 
 LOCAL_MODULE    := curldroid
 LOCAL_SRC_FILES := curldroid.cpp
-LOCAL_LDLIBS    := -lm -llog # -ljnigraphics
+LOCAL_LDLIBS    := -lm -llog -lz # -ljnigraphics
 # shared library
 LOCAL_C_INCLUDES := $(LOCAL_PATH) $(LOCAL_PATH)/shared/curl/include
 LOCAL_SHARED_LIBRARIES := curl cares
+ifneq ($(CURLDROID_NGHTTP2),)
+LOCAL_SHARED_LIBRARIES += nghttp2
+endif
+ifneq ($(CURLDROID_OPENSSL),)
+LOCAL_CFLAGS += -DCURLDROID_USE_OPENSSL
+LOCAL_C_INCLUDES += $(LOCAL_PATH)/shared/openssl/include
+LOCAL_SHARED_LIBRARIES += ssl crypto
+endif
 include $(BUILD_SHARED_LIBRARY)
 
 #LOCAL_STATIC_LIBRARIES := curl
@@ -28,4 +41,31 @@ include $(CLEAR_VARS)
 LOCAL_MODULE := cares
 LOCAL_SRC_FILES := $(TARGET_ARCH_ABI)/libcares.so
 
-include $(PREBUILT_SHARED_LIBRARY)
\ No newline at end of file
+include $(PREBUILT_SHARED_LIBRARY)
+
+# Add prebuilt libnghttp2
+ifneq ($(CURLDROID_NGHTTP2),)
+include $(CLEAR_VARS)
+
+LOCAL_MODULE := nghttp2
+LOCAL_SRC_FILES := $(TARGET_ARCH_ABI)/libnghttp2.so
+
+include $(PREBUILT_SHARED_LIBRARY)
+endif
+
+# Add prebuilt openssl
+ifneq ($(CURLDROID_OPENSSL),)
+include $(CLEAR_VARS)
+
+LOCAL_MODULE := ssl
+LOCAL_SRC_FILES := $(TARGET_ARCH_ABI)/libssl.so
+
+include $(PREBUILT_SHARED_LIBRARY)
+
+include $(CLEAR_VARS)
+
+LOCAL_MODULE := crypto
+LOCAL_SRC_FILES := $(TARGET_ARCH_ABI)/libcrypto.so
+
+include $(PREBUILT_SHARED_LIBRARY)
+endif
@@ -1,5 +1,8 @@
 # gen header files
-javah -o curldroid.h -cp ../bin/classes/ com.wealoha.libcurldroid.Curl
-# build
+javah -o curldroid.h -cp ../bin/classes/ com.wealoha.libcurldroid.Curl com.wealoha.libcurldroid.CurlMulti com.wealoha.libcurldroid.CurlShare com.wealoha.libcurldroid.TlsSessionStore
+# build (libnghttp2.so in <abi>/ is linked if present, see BUILD.md)
+for abi in armeabi armeabi-v7a x86; do
+	[ -f $abi/libnghttp2.so ] || echo "$abi: libnghttp2.so not found, build without HTTP/2"
+done
 ndk-build
 
@@ -1,16 +1,43 @@
 #include <jni.h>
 #include <cstddef>
+#include <cstring>
 #include <string>
 #include <list>
+#include <vector>
+#include <unistd.h>
+#include <fcntl.h>
+#include <pthread.h>
+#include <errno.h>
+#include <zlib.h>
 #include <android/log.h>
 #include "curl/curl.h"
 #include "curldroid.h"
+#ifdef CURLDROID_USE_OPENSSL
+#include <map>
+#include <openssl/ssl.h>
+#endif
 
 #define TAG "libcurldroid.jni"
 #define LOGW(...) (__android_log_print(ANDROID_LOG_WARN, TAG, __VA_ARGS__))
 #define LOGD(...) (__android_log_print(ANDROID_LOG_DEBUG, TAG, __VA_ARGS__))
 #define LOGV(...) (__android_log_print(ANDROID_LOG_VERBOSE, TAG, __VA_ARGS__))
 
+// native body buffer: initial size when Content-Length unknown, max size pre-sized
+// from Content-Length, max size kept by a pooled handle
+#define BODY_BUFFER_INITIAL (16 * 1024)
+#define BODY_BUFFER_MAX_PRESIZE (8 * 1024 * 1024)
+#define BODY_BUFFER_MAX_KEEP (64 * 1024)
+
+// byte[] size of CURLFORM_STREAM read callback
+#define FORM_STREAM_READ_SIZE (16 * 1024)
+
+// things done in CURLOPT_SSL_CTX_FUNCTION, same as Curl.java
+#define SSL_CTX_PERSIST_SESSION 1
+#define SSL_CTX_SHARED_CA 2
+
+// TLS sessions kept in native, oldest host evicted beyond
+#define TLS_SESSIONS_MAX 64
+
 
 static JavaVM *cached_jvm;
 
@@ -18,12 +45,19 @@ static JavaVM *cached_jvm;
 static jmethodID MID_CB_write; // write is really read
 static jmethodID MID_CB_read;  // and read is really write
                                // don't be confused
+static jmethodID MID_CB_write_buffer; // write into a reused direct ByteBuffer
+static jmethodID MID_CB_headers; // one call per response header block
+static jmethodID MID_CB_read_stream; // read into a reused byte[]
+static jclass CLS_String;
 
 // form Pojo
 static jmethodID MID_MultiPart_get_name;
 static jmethodID MID_MultiPart_get_filename;
 static jmethodID MID_MultiPart_get_content_type;
 static jmethodID MID_MultiPart_get_content;
+static jmethodID MID_MultiPart_get_file_path;
+static jmethodID MID_MultiPart_get_stream_callback;
+static jmethodID MID_MultiPart_get_content_length;
 
 jmethodID findMethod(JNIEnv* env, const char* class_name, const char* method_name, const char* method_signature) {
     jclass cls = env->FindClass(class_name);
@@ -52,6 +86,23 @@ JNIEXPORT jint JNICALL
     if (MID_CB_write == NULL) {
        return JNI_ERR;
     }
+    MID_CB_write_buffer = findMethod(env, "com/wealoha/libcurldroid/Curl$BufferWriteCallback", "readData", "(Ljava/nio/ByteBuffer;I)I");
+    if (MID_CB_write_buffer == NULL) {
+       return JNI_ERR;
+    }
+    MID_CB_headers = findMethod(env, "com/wealoha/libcurldroid/Curl$HeaderCallback", "onHeaders", "(ILjava/lang/String;[Ljava/lang/String;[Ljava/lang/String;)V");
+    if (MID_CB_headers == NULL) {
+       return JNI_ERR;
+    }
+    MID_CB_read_stream = findMethod(env, "com/wealoha/libcurldroid/Curl$StreamReadCallback", "writeData", "([BI)I");
+    if (MID_CB_read_stream == NULL) {
+       return JNI_ERR;
+    }
+    cls = env->FindClass("java/lang/String");
+    if (cls == NULL) {
+       return JNI_ERR;
+    }
+    CLS_String = (jclass) env->NewGlobalRef(cls);
     cls = env->FindClass("com/wealoha/libcurldroid/Curl$ReadCallback");
     if (cls == NULL) {
        return JNI_ERR;
@@ -77,6 +128,18 @@ JNIEXPORT jint JNICALL
     if (MID_MultiPart_get_content == NULL) {
 		return JNI_ERR;
 	}
+    MID_MultiPart_get_file_path = findMethod(env, multipart, "getFilePath", "()Ljava/lang/String;");
+    if (MID_MultiPart_get_file_path == NULL) {
+        return JNI_ERR;
+    }
+    MID_MultiPart_get_stream_callback = findMethod(env, multipart, "getStreamCallback", "()Lcom/wealoha/libcurldroid/Curl$StreamReadCallback;");
+    if (MID_MultiPart_get_stream_callback == NULL) {
+        return JNI_ERR;
+    }
+    MID_MultiPart_get_content_length = findMethod(env, multipart, "getContentLength", "()J");
+    if (MID_MultiPart_get_content_length == NULL) {
+        return JNI_ERR;
+    }
     return JNI_VERSION_1_6;
 }
 
@@ -86,12 +149,89 @@ JNIEnv* JNU_GetEnv() {
    return env;
 }
 
+// header bytes to java string, decoded as UTF-8, fallback to ISO-8859-1 if not valid
+// (NewStringUTF takes modified UTF-8 only, abort on bad input)
+jstring newHeaderString(JNIEnv* env, const std::string& str) {
+    const unsigned char* p = (const unsigned char*) str.data();
+    size_t len = str.size();
+    bool ascii = true;
+    for (size_t i = 0; i < len; i++) {
+        if (p[i] == 0 || p[i] >= 0x80) {
+            ascii = false;
+            break;
+        }
+    }
+    if (ascii) {
+        return env->NewStringUTF(str.c_str());
+    }
+
+    std::vector<jchar> chars;
+    chars.reserve(len);
+    bool utf8 = true;
+    for (size_t i = 0; i < len && utf8;) {
+        unsigned int c = p[i];
+        int extra = 0;
+        if (c < 0x80) {
+            extra = 0;
+        } else if ((c & 0xE0) == 0xC0) {
+            c &= 0x1F;
+            extra = 1;
+        } else if ((c & 0xF0) == 0xE0) {
+            c &= 0x0F;
+            extra = 2;
+        } else if ((c & 0xF8) == 0xF0) {
+            c &= 0x07;
+            extra = 3;
+        } else {
+            utf8 = false;
+            break;
+        }
+        if (i + extra >= len) {
+            utf8 = false;
+            break;
+        }
+        for (int j = 1; j <= extra; j++) {
+            if ((p[i + j] & 0xC0) != 0x80) {
+                utf8 = false;
+                break;
+            }
+            c = (c << 6) | (p[i + j] & 0x3F);
+        }
+        if (!utf8) {
+            break;
+        }
+        if (c >= 0x10000) {
+            c -= 0x10000;
+            chars.push_back((jchar) (0xD800 + (c >> 10)));
+            chars.push_back((jchar) (0xDC00 + (c & 0x3FF)));
+        } else {
+            chars.push_back((jchar) c);
+        }
+        i += extra + 1;
+    }
+    if (!utf8) {
+        chars.clear();
+        for (size_t i = 0; i < len; i++) {
+            chars.push_back((jchar) p[i]);
+        }
+    }
+    return env->NewString(chars.empty() ? NULL : &chars[0], chars.size());
+}
+
 // keep string reference by libcurl, release after perform
 typedef struct {
     jobject obj;
     void* str;
 } jobject_str_t;
 
+class Holder;
+
+// CURLFORM_STREAM part, passed to the read callback as userdata
+typedef struct {
+    Holder* holder;
+    jobject cb; // GlobalRef of a StreamReadCallback
+} form_stream_t;
+
 class Holder {
     CURL* mCurl;
     struct curl_httppost* m_post;
@@ -99,6 +239,154 @@ class Holder {
     std::list<struct curl_slist*> m_slists;
     std::list<jobject_str_t*> m_string_refs;
     std::list<jobject_str_t*> m_byte_array_refs;
+    std::list<form_stream_t*> m_form_streams;
+
+    // direct write buffer, chunks are coalesced here before calling java,
+    // kept across reset for the next transfer of a pooled handle
+    char* m_write_buf;
+    jint m_write_capacity;
+    jint m_write_len;
+    jobject m_write_byte_buffer; // GlobalRef of the ByteBuffer wraps m_write_buf
+    jobject m_write_cb; // GlobalRef held in m_j_global_refs
+
+    // body accumulated in native, taken by java once after transfer done
+    char* m_body_buf;
+    size_t m_body_capacity;
+    size_t m_body_len;
+
+    // header block of the response being received
+    jobject m_header_cb; // GlobalRef held in m_j_global_refs
+    int m_header_status;
+    std::string m_header_status_line;
+    std::vector<std::string> m_header_names;
+    std::vector<std::string> m_header_values;
+
+    // set by another thread, checked by xferinfo callback
+    volatile bool m_cancelled;
+
+    // request body read from java into a reused array, kept across reset
+    jbyteArray m_read_array; // GlobalRef
+    jint m_read_capacity;
+    jobject m_read_cb; // GlobalRef held in m_j_global_refs
+
+    // direct ByteBuffer set as CURLOPT_POSTFIELDS, libcurl reads its memory without copy
+    jobject m_post_buffer; // GlobalRef
+
+    // SSL_CTX_* flags
+    int m_ssl_ctx_flags;
+    // path of the shared X509_STORE, SSL_CTX_SHARED_CA
+    std::string m_ca_bundle;
+
+    void freeReadArray() {
+        if (m_read_array != NULL) {
+            JNU_GetEnv()->DeleteGlobalRef(m_read_array);
+            m_read_array = NULL;
+        }
+        m_read_capacity = 0;
+    }
+
+    // body written to file directly
+    int m_file_fd;
+    bool m_file_crc;
+    uLong m_file_crc32;
+    jlong m_file_length;
+    // resuming at m_file_length, checked on first write
+    bool m_file_resume;
+    // writing a range at m_file_length, must be 206
+    bool m_file_range;
+
+    // close file, false if fail
+    bool closeFile() {
+        if (m_file_fd < 0) {
+            return true;
+        }
+        int result = close(m_file_fd);
+        m_file_fd = -1;
+        if (result != 0) {
+            LOGW("close file fail: %d", errno);
+            return false;
+        }
+        return true;
+    }
+
+    void clearHeaders() {
+        m_header_status = 0;
+        m_header_status_line.clear();
+        m_header_names.clear();
+        m_header_values.clear();
+    }
+
+    // end of a header block, 1xx blocks and chunked trailers (no status line) are dropped
+    bool deliverHeaders() {
+        if (m_header_status_line.empty() || (m_header_status >= 100 && m_header_status < 200)) {
+            clearHeaders();
+            return true;
+        }
+        JNIEnv* env = JNU_GetEnv();
+        int size = m_header_names.size();
+        jobjectArray names = env->NewObjectArray(size, CLS_String, NULL);
+        jobjectArray values = env->NewObjectArray(size, CLS_String, NULL);
+        if (names == NULL || values == NULL) {
+            clearHeaders();
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            jstring name = newHeaderString(env, m_header_names[i]);
+            jstring value = newHeaderString(env, m_header_values[i]);
+            env->SetObjectArrayElement(names, i, name);
+            env->SetObjectArrayElement(values, i, value);
+            env->DeleteLocalRef(name);
+            env->DeleteLocalRef(value);
+        }
+        jstring status_line = newHeaderString(env, m_header_status_line);
+        env->CallVoidMethod(m_header_cb, MID_CB_headers, (jint) m_header_status, status_line, names, values);
+        env->DeleteLocalRef(status_line);
+        env->DeleteLocalRef(names);
+        env->DeleteLocalRef(values);
+        clearHeaders();
+        if (env->ExceptionCheck()) {
+            env->ExceptionDescribe();
+            env->ExceptionClear();
+            return false;
+        }
+        return true;
+    }
+
+    void freeBodyBuffer() {
+        if (m_body_buf != NULL) {
+            free(m_body_buf);
+            m_body_buf = NULL;
+        }
+        m_body_capacity = 0;
+        m_body_len = 0;
+    }
+
+    bool reserveBody(size_t capacity) {
+        if (capacity <= m_body_capacity) {
+            return true;
+        }
+        char* buf = (char*) realloc(m_body_buf, capacity);
+        if (buf == NULL) {
+            LOGW("alloc body buffer fail: %d", (int) capacity);
+            return false;
+        }
+        m_body_buf = buf;
+        m_body_capacity = capacity;
+        return true;
+    }
+
+    void freeWriteBuffer() {
+        if (m_write_byte_buffer != NULL) {
+            JNU_GetEnv()->DeleteGlobalRef(m_write_byte_buffer);
+            m_write_byte_buffer = NULL;
+        }
+        if (m_write_buf != NULL) {
+            free(m_write_buf);
+            m_write_buf = NULL;
+        }
+        m_write_capacity = 0;
+        m_write_len = 0;
+    }
 
     void cleanGlobalRefs() {
         JNIEnv * env = JNU_GetEnv();
@@ -146,9 +434,39 @@ public:
     Holder(CURL* curl) {
         mCurl = curl;
         m_post = NULL;
+        m_write_buf = NULL;
+        m_write_capacity = 0;
+        m_write_len = 0;
+        m_write_byte_buffer = NULL;
+        m_write_cb = NULL;
+        m_body_buf = NULL;
+        m_body_capacity = 0;
+        m_body_len = 0;
+        m_header_cb = NULL;
+        m_header_status = 0;
+        m_cancelled = false;
+        m_file_fd = -1;
+        m_file_crc = false;
+        m_file_crc32 = 0;
+        m_file_length = 0;
+        m_file_resume = false;
+        m_file_range = false;
+        m_read_array = NULL;
+        m_read_capacity = 0;
+        m_read_cb = NULL;
+        m_post_buffer = NULL;
+        m_ssl_ctx_flags = 0;
     }
 
     ~Holder() {
+        reset();
+        freeWriteBuffer();
+        freeBodyBuffer();
+        freeReadArray();
+    }
+
+    // release everything kept for the previous transfer, the curl handle itself is kept
+    void reset() {
         // clear all GlobalRefs avoid memory leak
         cleanGlobalRefs();
         // clear all slists
@@ -159,6 +477,40 @@ public:
 			curl_formfree(m_post);
 			m_post = NULL;
 		}
+        while (!m_form_streams.empty()) {
+            free(m_form_streams.front());
+            m_form_streams.pop_front();
+        }
+
+        // callback ref released in cleanGlobalRefs, buffer kept
+        m_write_cb = NULL;
+        m_write_len = 0;
+
+        m_header_cb = NULL;
+        clearHeaders();
+
+        m_cancelled = false;
+
+        m_read_cb = NULL;
+
+        // called after curl_easy_reset, setopt here would make the next request a POST
+        dropPostBuffer();
+
+        m_ssl_ctx_flags = 0;
+        m_ca_bundle.clear();
+
+        closeFile();
+        m_file_crc = false;
+        m_file_crc32 = 0;
+        m_file_length = 0;
+        m_file_resume = false;
+        m_file_range = false;
+
+        // small body buffer kept for the next transfer
+        m_body_len = 0;
+        if (m_body_capacity > BODY_BUFFER_MAX_KEEP) {
+            freeBodyBuffer();
+        }
     }
 
     CURL* getCurl() {
@@ -198,11 +550,472 @@ public:
         m_slists.push_back(slist);
     }
 
+    // cb_ref: GlobalRef of a StreamReadCallback, released in reset
+    form_stream_t* addFormStream(jobject cb_ref) {
+        form_stream_t* stream = (form_stream_t *) malloc(sizeof(form_stream_t));
+        stream->holder = this;
+        stream->cb = cb_ref;
+        m_form_streams.push_back(stream);
+        return stream;
+    }
+
+    // cb_ref: GlobalRef of a BufferWriteCallback
+    bool setWriteBuffer(JNIEnv* env, jobject cb_ref, jint capacity) {
+        if (capacity != m_write_capacity) {
+            freeWriteBuffer();
+            m_write_buf = (char*) malloc(capacity);
+            if (m_write_buf == NULL) {
+                return false;
+            }
+            jobject byte_buffer = env->NewDirectByteBuffer(m_write_buf, capacity);
+            if (byte_buffer == NULL) {
+                free(m_write_buf);
+                m_write_buf = NULL;
+                return false;
+            }
+            m_write_byte_buffer = env->NewGlobalRef(byte_buffer);
+            env->DeleteLocalRef(byte_buffer);
+            m_write_capacity = capacity;
+        }
+        m_write_cb = cb_ref;
+        m_write_len = 0;
+        return true;
+    }
+
+    // copy into the buffer, call java only when it's full
+    size_t bufferWrite(const char* ptr, size_t length) {
+        size_t offset = 0;
+        while (offset < length) {
+            size_t n = length - offset;
+            if (n > (size_t) (m_write_capacity - m_write_len)) {
+                n = m_write_capacity - m_write_len;
+            }
+            memcpy(m_write_buf + m_write_len, ptr + offset, n);
+            m_write_len += n;
+            offset += n;
+            if (m_write_len == m_write_capacity && !flushWrite()) {
+                return 0;
+            }
+        }
+        return length;
+    }
+
+    bool flushWrite() {
+        if (m_write_cb == NULL || m_write_len == 0) {
+            return true;
+        }
+        JNIEnv* env = JNU_GetEnv();
+        jint length = m_write_len;
+        m_write_len = 0;
+        jint result = env->CallIntMethod(m_write_cb, MID_CB_write_buffer, m_write_byte_buffer, length);
+        if (env->ExceptionCheck()) {
+            env->ExceptionDescribe();
+            env->ExceptionClear();
+            return false;
+        }
+        return result == length;
+    }
+
+    void cancel() {
+        m_cancelled = true;
+    }
+
+    bool isCancelled() {
+        return m_cancelled;
+    }
+
+    // cb_ref: GlobalRef of a StreamReadCallback
+    bool setReadArray(JNIEnv* env, jobject cb_ref, jint capacity) {
+        if (!ensureReadArray(env, capacity)) {
+            return false;
+        }
+        m_read_cb = cb_ref;
+        return true;
+    }
+
+    bool ensureReadArray(JNIEnv* env, jint capacity) {
+        if (capacity != m_read_capacity) {
+            freeReadArray();
+            jbyteArray array = env->NewByteArray(capacity);
+            if (array == NULL) {
+                env->ExceptionClear();
+                return false;
+            }
+            m_read_array = (jbyteArray) env->NewGlobalRef(array);
+            env->DeleteLocalRef(array);
+            m_read_capacity = capacity;
+        }
+        return true;
+    }
+
+    size_t readStream(char* buffer, size_t length) {
+        return readStream(m_read_cb, buffer, length);
+    }
+
+    // fill libcurl's buffer from java, 0 means end of body
+    size_t readStream(jobject cb, char* buffer, size_t length) {
+        JNIEnv* env = JNU_GetEnv();
+        jint max = length < (size_t) m_read_capacity ? (jint) length : m_read_capacity;
+        jint result = env->CallIntMethod(cb, MID_CB_read_stream, m_read_array, max);
+        if (env->ExceptionCheck()) {
+            env->ExceptionDescribe();
+            env->ExceptionClear();
+            return CURL_READFUNC_ABORT;
+        }
+        if (result < 0 || result > max) {
+            return CURL_READFUNC_ABORT;
+        }
+        if (result > 0) {
+            env->GetByteArrayRegion(m_read_array, 0, result, (jbyte *) buffer);
+        }
+        return result;
+    }
+
+    // offset > 0: keep bytes before offset, body appended if response is 206
+    bool openFile(const char* path, jlong offset, bool crc) {
+        closeFile();
+        m_file_fd = open(path, offset > 0 ? O_RDWR | O_CREAT : O_WRONLY | O_CREAT | O_TRUNC, 0644);
+        if (m_file_fd < 0) {
+            LOGW("open file fail: %s %d", path, errno);
+            return false;
+        }
+        m_file_crc = crc;
+        m_file_crc32 = crc32(0L, Z_NULL, 0);
+        m_file_length = 0;
+        m_file_resume = false;
+        m_file_range = false;
+        if (offset > 0) {
+            if (!seekFile(offset)) {
+                closeFile();
+                return false;
+            }
+            m_file_resume = true;
+        }
+        return true;
+    }
+
+    // bytes outside the range kept, fail if response is not 206
+    bool openFileRange(const char* path, jlong offset) {
+        closeFile();
+        m_file_fd = open(path, O_WRONLY | O_CREAT, 0644);
+        if (m_file_fd < 0) {
+            LOGW("open file fail: %s %d", path, errno);
+            return false;
+        }
+        m_file_crc = false;
+        m_file_crc32 = 0;
+        m_file_resume = false;
+        if (lseek(m_file_fd, (off_t) offset, SEEK_SET) < 0) {
+            LOGW("seek file fail: %d", errno);
+            closeFile();
+            return false;
+        }
+        m_file_length = offset;
+        m_file_range = true;
+        return true;
+    }
+
+    // drop bytes after offset, crc of bytes before it
+    bool seekFile(jlong offset) {
+        if (ftruncate(m_file_fd, (off_t) offset) != 0) {
+            LOGW("truncate file fail: %d", errno);
+            return false;
+        }
+        if (offset > 0 && m_file_crc) {
+            char buf[8192];
+            jlong pos = 0;
+            while (pos < offset) {
+                ssize_t n = pread(m_file_fd, buf, sizeof(buf), (off_t) pos);
+                if (n < 0 && errno == EINTR) {
+                    continue;
+                }
+                if (n <= 0) {
+                    LOGW("read file fail: %d", errno);
+                    return false;
+                }
+                if (n > offset - pos) {
+                    n = (ssize_t) (offset - pos);
+                }
+                m_file_crc32 = crc32(m_file_crc32, (const Bytef*) buf, n);
+                pos += n;
+            }
+        }
+        if (lseek(m_file_fd, (off_t) offset, SEEK_SET) < 0) {
+            LOGW("seek file fail: %d", errno);
+            return false;
+        }
+        m_file_length = offset;
+        return true;
+    }
+
+    size_t writeFile(const char* ptr, size_t length) {
+        if (m_file_range) {
+            m_file_range = false;
+            long status = 0;
+            curl_easy_getinfo(mCurl, CURLINFO_RESPONSE_CODE, &status);
+            if (status != 206) {
+                // whole body or error, would overwrite other ranges
+                LOGW("range not served: %ld", status);
+                return 0;
+            }
+        }
+        if (m_file_resume) {
+            m_file_resume = false;
+            long status = 0;
+            curl_easy_getinfo(mCurl, CURLINFO_RESPONSE_CODE, &status);
+            if (status != 206) {
+                if (status < 200 || status >= 300) {
+                    // error body, keep the partial bytes
+                    LOGD("not resumed: %ld, body discarded", status);
+                    m_file_resume = true;
+                    return length;
+                }
+                // whole body sent, start over
+                LOGD("not resumed: %ld, rewrite", status);
+                m_file_crc32 = crc32(0L, Z_NULL, 0);
+                if (!seekFile(0)) {
+                    return 0;
+                }
+            }
+        }
+        size_t offset = 0;
+        while (offset < length) {
+            ssize_t n = write(m_file_fd, ptr + offset, length - offset);
+            if (n < 0) {
+                if (errno == EINTR) {
+                    continue;
+                }
+                LOGW("write file fail: %d", errno);
+                return 0;
+            }
+            offset += n;
+        }
+        if (m_file_crc) {
+            m_file_crc32 = crc32(m_file_crc32, (const Bytef*) ptr, length);
+        }
+        m_file_length += length;
+        return length;
+    }
+
+    jlong getFileLength() {
+        return m_file_length;
+    }
+
+    // -1 if not computed
+    jlong getFileCrc32() {
+        return m_file_crc ? (jlong) m_file_crc32 : -1;
+    }
+
+    // cb_ref: GlobalRef of a HeaderCallback
+    void setHeaderCallback(jobject cb_ref) {
+        m_header_cb = cb_ref;
+        clearHeaders();
+    }
+
+    // one header line, without CRLF
+    bool parseHeader(const char* line, size_t length) {
+        if (length == 0) {
+            return deliverHeaders();
+        }
+        if (length > 5 && strncmp(line, "HTTP/", 5) == 0) {
+            // status line starts a new block (after redirect, 100 Continue, proxy CONNECT...)
+            clearHeaders();
+            m_header_status_line.assign(line, length);
+            const char* space = (const char*) memchr(line, ' ', length);
+            if (space != NULL) {
+                m_header_status = atoi(space + 1);
+            }
+            return true;
+        }
+        if ((line[0] == ' ' || line[0] == '\t') && !m_header_values.empty()) {
+            // folded value
+            size_t start = 0;
+            while (start < length && (line[start] == ' ' || line[start] == '\t')) {
+                start++;
+            }
+            m_header_values.back().append(" ").append(line + start, length - start);
+            return true;
+        }
+        const char* colon = (const char*) memchr(line, ':', length);
+        if (colon == NULL) {
+            return true;
+        }
+        size_t name_end = colon - line;
+        while (name_end > 0 && (line[name_end - 1] == ' ' || line[name_end - 1] == '\t')) {
+            name_end--;
+        }
+        size_t value_start = colon - line + 1;
+        while (value_start < length && (line[value_start] == ' ' || line[value_start] == '\t')) {
+            value_start++;
+        }
+        size_t value_end = length;
+        while (value_end > value_start && (line[value_end - 1] == ' ' || line[value_end - 1] == '\t')) {
+            value_end--;
+        }
+        m_header_names.push_back(std::string(line, name_end));
+        m_header_values.push_back(std::string(line + value_start, value_end - value_start));
+        return true;
+    }
+
+    void setBodyAccumulate() {
+        m_body_len = 0;
+    }
+
+    size_t accumulateBody(const char* ptr, size_t length) {
+        if (m_body_len == 0) {
+            // first chunk, headers are all received
+            double content_length = -1;
+            curl_easy_getinfo(mCurl, CURLINFO_CONTENT_LENGTH_DOWNLOAD, &content_length);
+            size_t capacity = BODY_BUFFER_INITIAL;
+            if (content_length > 0 && content_length <= BODY_BUFFER_MAX_PRESIZE) {
+                capacity = (size_t) content_length;
+            }
+            if (capacity < length) {
+                capacity = length;
+            }
+            if (!reserveBody(capacity)) {
+                return 0;
+            }
+        } else if (m_body_len + length > m_body_capacity) {
+            size_t capacity = m_body_capacity * 2;
+            if (capacity < m_body_len + length) {
+                capacity = m_body_len + length;
+            }
+            if (!reserveBody(capacity)) {
+                return 0;
+            }
+        }
+        memcpy(m_body_buf + m_body_len, ptr, length);
+        m_body_len += length;
+        return length;
+    }
+
+    // copy accumulated body to a java array, the only copy of the body in java
+    jbyteArray takeBody(JNIEnv* env) {
+        jbyteArray array = env->NewByteArray(m_body_len);
+        if (array == NULL) {
+            return NULL;
+        }
+        if (m_body_len > 0) {
+            env->SetByteArrayRegion(array, 0, m_body_len, (jbyte *) m_body_buf);
+        }
+        m_body_len = 0;
+        return array;
+    }
+
+    // deliver data left in the buffer, close file when transfer done
+    CURLcode finishWrite(CURLcode code) {
+        if (!flushWrite() && code == CURLE_OK) {
+            code = CURLE_WRITE_ERROR;
+        }
+        if (!closeFile() && code == CURLE_OK) {
+            code = CURLE_WRITE_ERROR;
+        }
+        // request body not needed anymore, don't keep it until reset
+        releasePostBuffer();
+        return code;
+    }
+
+    // address: of the buffer content to send, must stay valid until releasePostBuffer
+    CURLcode setPostBuffer(JNIEnv* env, jobject buffer, char* address) {
+        releasePostBuffer();
+        CURLcode code = curl_easy_setopt(mCurl, CURLOPT_POSTFIELDS, address);
+        if (code == CURLE_OK) {
+            m_post_buffer = env->NewGlobalRef(buffer);
+        }
+        return code;
+    }
+
+    void releasePostBuffer() {
+        if (m_post_buffer == NULL) {
+            return;
+        }
+        // don't leave libcurl pointing at memory may be collected
+        curl_easy_setopt(mCurl, CURLOPT_POSTFIELDSIZE, 0L);
+        curl_easy_setopt(mCurl, CURLOPT_POSTFIELDS, "");
+        dropPostBuffer();
+    }
+
+    // only the GlobalRef, options untouched
+    void dropPostBuffer() {
+        if (m_post_buffer == NULL) {
+            return;
+        }
+        JNU_GetEnv()->DeleteGlobalRef(m_post_buffer);
+        m_post_buffer = NULL;
+    }
+
+    void addSslCtxFlags(int flags) {
+        m_ssl_ctx_flags |= flags;
+    }
+
+    int getSslCtxFlags() {
+        return m_ssl_ctx_flags;
+    }
+
+    void setCaBundle(const char* path) {
+        m_ca_bundle = path;
+    }
+
+    const std::string& getCaBundle() {
+        return m_ca_bundle;
+    }
+
+};
+
+// curl_share, data shared between easy handles, guarded by one mutex per curl_lock_data
+class ShareHolder {
+    CURLSH* m_share;
+    pthread_mutex_t m_locks[CURL_LOCK_DATA_LAST];
+
+    static void lock(CURL *handle, curl_lock_data data, curl_lock_access access, void *userptr) {
+        ShareHolder* holder = (ShareHolder*) userptr;
+        if (data >= 0 && data < CURL_LOCK_DATA_LAST) {
+            pthread_mutex_lock(&holder->m_locks[data]);
+        }
+    }
+
+    static void unlock(CURL *handle, curl_lock_data data, void *userptr) {
+        ShareHolder* holder = (ShareHolder*) userptr;
+        if (data >= 0 && data < CURL_LOCK_DATA_LAST) {
+            pthread_mutex_unlock(&holder->m_locks[data]);
+        }
+    }
+
+public:
+    ShareHolder(CURLSH* share) {
+        m_share = share;
+        for (int i = 0; i < CURL_LOCK_DATA_LAST; i++) {
+            pthread_mutex_init(&m_locks[i], NULL);
+        }
+        curl_share_setopt(m_share, CURLSHOPT_LOCKFUNC, &ShareHolder::lock);
+        curl_share_setopt(m_share, CURLSHOPT_UNLOCKFUNC, &ShareHolder::unlock);
+        curl_share_setopt(m_share, CURLSHOPT_USERDATA, (void *) this);
+    }
+
+    ~ShareHolder() {
+        for (int i = 0; i < CURL_LOCK_DATA_LAST; i++) {
+            pthread_mutex_destroy(&m_locks[i]);
+        }
+    }
+
+    CURLSH* getShare() {
+        return m_share;
+    }
 };
 
+#ifdef CURLDROID_USE_OPENSSL
+void openssl_install_locks();
+#endif
+
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlGlobalInitNative
   (JNIEnv * env, jclass cls, jint flag) {
-    curl_global_init((int) flag);
+    CURLcode code = curl_global_init((int) flag);
+#ifdef CURLDROID_USE_OPENSSL
+    // before any transfer, OpenSSL is used by libcurl on many threads
+    openssl_install_locks();
+#endif
+    return (int) code;
 }
 
 JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlGlobalCleanupNative
@@ -230,12 +1043,33 @@ JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyCleanupNative
     }
 }
 
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyResetNative
+  (JNIEnv * env, jobject obj, jlong handle) {
+    if (handle != 0) {
+        Holder* holder = (Holder*) handle;
+        // options back to default, live connections, dns cache and ssl session cache are kept
+        curl_easy_reset(holder->getCurl());
+        holder->reset();
+    }
+}
+
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptLongNative
   (JNIEnv *env, jobject obj, jlong handle, jint opt, jlong value) {
     Holder* holder = (Holder*) handle;
     return (int) curl_easy_setopt(holder->getCurl(), (CURLoption) opt, (long) value);
 }
 
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointShareNative
+  (JNIEnv *env, jobject obj, jlong handle, jint opt, jlong share_handle) {
+    Holder* holder = (Holder*) handle;
+    CURLSH* share = NULL;
+    if (share_handle != 0) {
+        share = ((ShareHolder*) share_handle)->getShare();
+    }
+    // NULL detach from previous share
+    return (int) curl_easy_setopt(holder->getCurl(), (CURLoption) opt, share);
+}
+
 size_t write_callback(char *ptr, size_t size, size_t nmemb, void *userdata) {
     JNIEnv *env;
     jint result;
@@ -259,6 +1093,247 @@ size_t write_callback(char *ptr, size_t size, size_t nmemb, void *userdata) {
     return result;
 }
 
+size_t buffer_write_callback(char *ptr, size_t size, size_t nmemb, void *userdata) {
+    Holder* holder = (Holder*) userdata;
+    size_t length = size * nmemb;
+    if (length == 0) {
+        return 0;
+    }
+    return holder->bufferWrite(ptr, length);
+}
+
+size_t header_parse_callback(char *buffer, size_t size, size_t nitems, void *userdata) {
+    Holder* holder = (Holder*) userdata;
+    size_t length = size * nitems;
+    size_t line_length = length;
+    while (line_length > 0 && (buffer[line_length - 1] == '\r' || buffer[line_length - 1] == '\n')) {
+        line_length--;
+    }
+    if (!holder->parseHeader(buffer, line_length)) {
+        return 0;
+    }
+    return length;
+}
+
+// called by libcurl frequently (also while resolving and connecting), no java call here
+int xferinfo_callback(void *clientp, curl_off_t dltotal, curl_off_t dlnow, curl_off_t ultotal, curl_off_t ulnow) {
+    Holder* holder = (Holder*) clientp;
+    // non-zero aborts the transfer with CURLE_ABORTED_BY_CALLBACK
+    return holder->isCancelled() ? 1 : 0;
+}
+
+size_t stream_read_callback(char *buffer, size_t size, size_t nitems, void *userdata) {
+    Holder* holder = (Holder*) userdata;
+    size_t length = size * nitems;
+    if (length == 0) {
+        return 0;
+    }
+    return holder->readStream(buffer, length);
+}
+
+// a stream body can't be read again, rewind (307/308 redirect, auth) fails with CURLE_SEND_FAIL_REWIND
+int stream_seek_callback(void *userdata, curl_off_t offset, int origin) {
+    return CURL_SEEKFUNC_CANTSEEK;
+}
+
+#ifdef CURLDROID_USE_OPENSSL
+// TLS sessions by SNI host, restored into new connections, saved by TlsSessionStore
+static pthread_mutex_t tls_sessions_lock = PTHREAD_MUTEX_INITIALIZER;
+static std::map<std::string, SSL_SESSION*> tls_sessions;
+// hosts of tls_sessions, least recently put first
+static std::list<std::string> tls_session_hosts;
+static jlong tls_sessions_version = 0;
+
+// replace session of host, takes the reference
+void put_tls_session(const std::string& host, SSL_SESSION* session) {
+    SSL_SESSION* old = NULL;
+    SSL_SESSION* evicted = NULL;
+    pthread_mutex_lock(&tls_sessions_lock);
+    std::map<std::string, SSL_SESSION*>::iterator it = tls_sessions.find(host);
+    if (it != tls_sessions.end()) {
+        old = it->second;
+        tls_session_hosts.remove(host);
+    }
+    tls_sessions[host] = session;
+    tls_session_hosts.push_back(host);
+    if (tls_session_hosts.size() > TLS_SESSIONS_MAX) {
+        it = tls_sessions.find(tls_session_hosts.front());
+        evicted = it->second;
+        tls_sessions.erase(it);
+        tls_session_hosts.pop_front();
+    }
+    tls_sessions_version++;
+    pthread_mutex_unlock(&tls_sessions_lock);
+    if (old != NULL) {
+        SSL_SESSION_free(old);
+    }
+    if (evicted != NULL) {
+        SSL_SESSION_free(evicted);
+    }
+}
+
+// new session negotiated, return 1: reference kept
+int tls_new_session_callback(SSL* ssl, SSL_SESSION* session) {
+    const char* host = SSL_get_servername(ssl, TLSEXT_NAMETYPE_host_name);
+    if (host == NULL) {
+        return 0;
+    }
+    LOGV("new tls session: %s", host);
+    put_tls_session(host, session);
+    return 1;
+}
+
+// before ClientHello, resume the session kept if libcurl has none for the connection
+void tls_info_callback(const SSL* ssl, int where, int ret) {
+    if (!(where & SSL_CB_HANDSHAKE_START) || SSL_get_session(ssl) != NULL) {
+        return;
+    }
+    const char* host = SSL_get_servername(ssl, TLSEXT_NAMETYPE_host_name);
+    if (host == NULL) {
+        return;
+    }
+    pthread_mutex_lock(&tls_sessions_lock);
+    std::map<std::string, SSL_SESSION*>::iterator it = tls_sessions.find(host);
+    if (it != tls_sessions.end()) {
+        LOGV("resume tls session: %s", host);
+        SSL_set_session((SSL*) ssl, it->second);
+    }
+    pthread_mutex_unlock(&tls_sessions_lock);
+}
+
+// CA bundles parsed once, shared by all connections (reference counted by OpenSSL)
+static pthread_mutex_t ca_stores_lock = PTHREAD_MUTEX_INITIALIZER;
+static std::map<std::string, X509_STORE*> ca_stores;
+
+// NULL if load fail
+X509_STORE* get_ca_store(const std::string& path) {
+    X509_STORE* store = NULL;
+    pthread_mutex_lock(&ca_stores_lock);
+    std::map<std::string, X509_STORE*>::iterator it = ca_stores.find(path);
+    if (it != ca_stores.end()) {
+        store = it->second;
+    } else {
+        store = X509_STORE_new();
+        if (store != NULL && X509_STORE_load_locations(store, path.c_str(), NULL) == 1) {
+            LOGD("ca bundle loaded: %s", path.c_str());
+            ca_stores[path] = store;
+        } else {
+            LOGW("load ca bundle fail: %s", path.c_str());
+            if (store != NULL) {
+                X509_STORE_free(store);
+                store = NULL;
+            }
+        }
+    }
+    pthread_mutex_unlock(&ca_stores_lock);
+    return store;
+}
+
+#if OPENSSL_VERSION_NUMBER < 0x10100000L
+// OpenSSL 1.0 is thread safe only with locking callbacks, installed at curl global init
+static pthread_mutex_t* openssl_locks;
+
+void openssl_locking_callback(int mode, int type, const char* file, int line) {
+    if (mode & CRYPTO_LOCK) {
+        pthread_mutex_lock(&openssl_locks[type]);
+    } else {
+        pthread_mutex_unlock(&openssl_locks[type]);
+    }
+}
+
+unsigned long openssl_id_callback() {
+    return (unsigned long) pthread_self();
+}
+
+void openssl_init_locks() {
+    if (CRYPTO_get_locking_callback() != NULL) {
+        // set by someone else
+        return;
+    }
+    int num = CRYPTO_num_locks();
+    openssl_locks = (pthread_mutex_t*) malloc(num * sizeof(pthread_mutex_t));
+    for (int i = 0; i < num; i++) {
+        pthread_mutex_init(&openssl_locks[i], NULL);
+    }
+    CRYPTO_set_id_callback(&openssl_id_callback);
+    CRYPTO_set_locking_callback(&openssl_locking_callback);
+}
+
+static pthread_once_t openssl_locks_once = PTHREAD_ONCE_INIT;
+#endif
+
+// called once by curl global init
+void openssl_install_locks() {
+#if OPENSSL_VERSION_NUMBER < 0x10100000L
+    pthread_once(&openssl_locks_once, &openssl_init_locks);
+#endif
+}
+
+// called by libcurl for every new connection, ctx is not shared
+CURLcode ssl_ctx_callback(CURL* curl, void* sslctx, void* userptr) {
+    Holder* holder = (Holder*) userptr;
+    SSL_CTX* ctx = (SSL_CTX*) sslctx;
+    if (holder->getSslCtxFlags() & SSL_CTX_PERSIST_SESSION) {
+        SSL_CTX_set_session_cache_mode(ctx, SSL_SESS_CACHE_CLIENT | SSL_SESS_CACHE_NO_INTERNAL_STORE);
+        SSL_CTX_sess_set_new_cb(ctx, &tls_new_session_callback);
+        SSL_CTX_set_info_callback(ctx, &tls_info_callback);
+    }
+    if (holder->getSslCtxFlags() & SSL_CTX_SHARED_CA) {
+        X509_STORE* store = get_ca_store(holder->getCaBundle());
+        if (store == NULL) {
+            return CURLE_SSL_CACERT_BADFILE;
+        }
+        // ctx frees the store it holds
+#if OPENSSL_VERSION_NUMBER < 0x10100000L
+        CRYPTO_add(&store->references, 1, CRYPTO_LOCK_X509_STORE);
+#else
+        X509_STORE_up_ref(store);
+#endif
+        SSL_CTX_set_cert_store(ctx, store);
+    }
+    return CURLE_OK;
+}
+
+// CURLOPT_SSL_CTX_FUNCTION, fail if libcurl not built with OpenSSL
+CURLcode set_ssl_ctx_flags(Holder* holder, int flags) {
+    CURL * curl = holder->getCurl();
+    CURLcode code = curl_easy_setopt(curl, CURLOPT_SSL_CTX_FUNCTION, &ssl_ctx_callback);
+    if (code != CURLE_OK) {
+        return code;
+    }
+    curl_easy_setopt(curl, CURLOPT_SSL_CTX_DATA, (void *) holder);
+    holder->addSslCtxFlags(flags);
+    return CURLE_OK;
+}
+#endif
+
+size_t form_stream_read_callback(char *buffer, size_t size, size_t nitems, void *userdata) {
+    form_stream_t* stream = (form_stream_t*) userdata;
+    size_t length = size * nitems;
+    if (length == 0) {
+        return 0;
+    }
+    return stream->holder->readStream(stream->cb, buffer, length);
+}
+
+size_t file_write_callback(char *ptr, size_t size, size_t nmemb, void *userdata) {
+    Holder* holder = (Holder*) userdata;
+    size_t length = size * nmemb;
+    if (length == 0) {
+        return 0;
+    }
+    return holder->writeFile(ptr, length);
+}
+
+size_t body_accumulate_callback(char *ptr, size_t size, size_t nmemb, void *userdata) {
+    Holder* holder = (Holder*) userdata;
+    size_t length = size * nmemb;
+    if (length == 0) {
+        return 0;
+    }
+    return holder->accumulateBody(ptr, length);
+}
+
 size_t read_callback(char *buffer, size_t size, size_t nitems, void *instream) {
     JNIEnv *env;
     jbyteArray array;
@@ -318,11 +1393,183 @@ JNIEXPORT int JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptFunctionN
     return (int) CURLE_OK;
 }
 
-JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointNative
-  (JNIEnv * env, jobject obj, jlong handle, jint opt, jstring value) {
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptBufferFunctionNative
+  (JNIEnv * env, jobject obj, jlong handle, jint opt, jobject cb, jint buffer_size) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    if (opt != CURLOPT_WRITEFUNCTION) {
+        return (int) CURLE_UNKNOWN_OPTION;
+    }
+    if (buffer_size <= 0) {
+        return (int) CURLE_BAD_FUNCTION_ARGUMENT;
+    }
+    jobject cb_ref = env->NewGlobalRef(cb);
+    holder->addGlobalRefs(cb_ref);
+    if (!holder->setWriteBuffer(env, cb_ref, buffer_size)) {
+        LOGW("alloc write buffer fail: %d", buffer_size);
+        return (int) CURLE_OUT_OF_MEMORY;
+    }
+    curl_easy_setopt(curl, CURLOPT_WRITEFUNCTION, &buffer_write_callback);
+    curl_easy_setopt(curl, CURLOPT_WRITEDATA, (void *) holder);
+    return (int) CURLE_OK;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptStreamReadFunctionNative
+  (JNIEnv * env, jobject obj, jlong handle, jint opt, jobject cb, jint buffer_size) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    if (opt != CURLOPT_READFUNCTION) {
+        return (int) CURLE_UNKNOWN_OPTION;
+    }
+    if (buffer_size <= 0) {
+        return (int) CURLE_BAD_FUNCTION_ARGUMENT;
+    }
+    jobject cb_ref = env->NewGlobalRef(cb);
+    holder->addGlobalRefs(cb_ref);
+    if (!holder->setReadArray(env, cb_ref, buffer_size)) {
+        LOGW("alloc read array fail: %d", buffer_size);
+        return (int) CURLE_OUT_OF_MEMORY;
+    }
+    curl_easy_setopt(curl, CURLOPT_READFUNCTION, &stream_read_callback);
+    curl_easy_setopt(curl, CURLOPT_READDATA, (void *) holder);
+    curl_easy_setopt(curl, CURLOPT_SEEKFUNCTION, &stream_seek_callback);
+    curl_easy_setopt(curl, CURLOPT_SEEKDATA, (void *) holder);
+    return (int) CURLE_OK;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptHeaderFunctionNative
+  (JNIEnv * env, jobject obj, jlong handle, jint opt, jobject cb) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    if (opt != CURLOPT_HEADERFUNCTION) {
+        return (int) CURLE_UNKNOWN_OPTION;
+    }
+    jobject cb_ref = env->NewGlobalRef(cb);
+    holder->addGlobalRefs(cb_ref);
+    holder->setHeaderCallback(cb_ref);
+    curl_easy_setopt(curl, CURLOPT_HEADERFUNCTION, &header_parse_callback);
+    curl_easy_setopt(curl, CURLOPT_HEADERDATA, (void *) holder);
+    return (int) CURLE_OK;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setCancellableNative
+  (JNIEnv * env, jobject obj, jlong handle) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    curl_easy_setopt(curl, CURLOPT_XFERINFOFUNCTION, &xferinfo_callback);
+    curl_easy_setopt(curl, CURLOPT_XFERINFODATA, (void *) holder);
+    return (int) curl_easy_setopt(curl, CURLOPT_NOPROGRESS, 0L);
+}
+
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyCancelNative
+  (JNIEnv * env, jobject obj, jlong handle) {
+    Holder* holder = (Holder*) handle;
+    holder->cancel();
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setWriteFileNative
+  (JNIEnv * env, jobject obj, jlong handle, jstring path, jlong offset, jboolean crc) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    const char* path_str = env->GetStringUTFChars(path, 0);
+    if (path_str == NULL) {
+        return (int) CURLE_OUT_OF_MEMORY;
+    }
+    bool opened = holder->openFile(path_str, offset, crc == JNI_TRUE);
+    env->ReleaseStringUTFChars(path, path_str);
+    if (!opened) {
+        return (int) CURLE_WRITE_ERROR;
+    }
+    curl_easy_setopt(curl, CURLOPT_WRITEFUNCTION, &file_write_callback);
+    curl_easy_setopt(curl, CURLOPT_WRITEDATA, (void *) holder);
+    return (int) CURLE_OK;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setWriteFileRangeNative
+  (JNIEnv * env, jobject obj, jlong handle, jstring path, jlong offset) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    const char* path_str = env->GetStringUTFChars(path, 0);
+    if (path_str == NULL) {
+        return (int) CURLE_OUT_OF_MEMORY;
+    }
+    bool opened = holder->openFileRange(path_str, offset);
+    env->ReleaseStringUTFChars(path, path_str);
+    if (!opened) {
+        return (int) CURLE_WRITE_ERROR;
+    }
+    curl_easy_setopt(curl, CURLOPT_WRITEFUNCTION, &file_write_callback);
+    curl_easy_setopt(curl, CURLOPT_WRITEDATA, (void *) holder);
+    return (int) CURLE_OK;
+}
+
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_Curl_getWriteFileLengthNative
+  (JNIEnv * env, jobject obj, jlong handle) {
+    Holder* holder = (Holder*) handle;
+    return holder->getFileLength();
+}
+
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_Curl_getWriteFileCrc32Native
+  (JNIEnv * env, jobject obj, jlong handle) {
+    Holder* holder = (Holder*) handle;
+    return holder->getFileCrc32();
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setSslCtxFlagsNative
+  (JNIEnv * env, jobject obj, jlong handle, jint flags) {
+#ifdef CURLDROID_USE_OPENSSL
+    return (int) set_ssl_ctx_flags((Holder*) handle, flags);
+#else
+    return (int) CURLE_NOT_BUILT_IN;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setCaBundleNative
+  (JNIEnv * env, jobject obj, jlong handle, jstring path) {
+#ifdef CURLDROID_USE_OPENSSL
+    Holder* holder = (Holder*) handle;
+    const char* path_str = env->GetStringUTFChars(path, 0);
+    std::string ca_bundle = path_str;
+    env->ReleaseStringUTFChars(path, path_str);
+
+    // parsed here once, fail early
+    if (get_ca_store(ca_bundle) == NULL) {
+        return (int) CURLE_SSL_CACERT_BADFILE;
+    }
+    CURLcode code = set_ssl_ctx_flags(holder, SSL_CTX_SHARED_CA);
+    if (code != CURLE_OK) {
+        return (int) code;
+    }
+    holder->setCaBundle(ca_bundle.c_str());
+    // libcurl must not load a bundle itself (including the built in default)
+    curl_easy_setopt(holder->getCurl(), CURLOPT_CAINFO, NULL);
+    curl_easy_setopt(holder->getCurl(), CURLOPT_CAPATH, NULL);
+    return (int) CURLE_OK;
+#else
+    return (int) CURLE_NOT_BUILT_IN;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setAccumulateBodyNative
+  (JNIEnv * env, jobject obj, jlong handle) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    holder->setBodyAccumulate();
+    curl_easy_setopt(curl, CURLOPT_WRITEFUNCTION, &body_accumulate_callback);
+    curl_easy_setopt(curl, CURLOPT_WRITEDATA, (void *) holder);
+    return (int) CURLE_OK;
+}
+
+JNIEXPORT jbyteArray JNICALL Java_com_wealoha_libcurldroid_Curl_takeAccumulatedBodyNative
+  (JNIEnv * env, jobject obj, jlong handle) {
+    Holder* holder = (Holder*) handle;
+    return holder->takeBody(env);
+}
+
+// string option, libcurl copies the string except CURLOPT_POSTFIELDS
+int setopt_string(JNIEnv * env, Holder* holder, jint opt, jstring value) {
     const char *str;
     int result;
-    Holder* holder = (Holder*) handle;
     CURL * curl = holder->getCurl();
     jstring value_ref;
     str = env->GetStringUTFChars(value, 0);
@@ -346,6 +1593,57 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPo
     return result;
 }
 
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointNative
+  (JNIEnv * env, jobject obj, jlong handle, jint opt, jstring value) {
+    Holder* holder = (Holder*) handle;
+    return setopt_string(env, holder, opt, value);
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptBatchNative
+  (JNIEnv * env, jobject obj, jlong handle, jint size, jintArray opts, jlongArray long_values, jobjectArray string_values, jintArray results) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+    if (size <= 0) {
+        return 0;
+    }
+
+    std::vector<jint> opt_vector(size);
+    std::vector<jlong> long_vector(size);
+    std::vector<jint> result_vector(size);
+    env->GetIntArrayRegion(opts, 0, size, &opt_vector[0]);
+    env->GetLongArrayRegion(long_values, 0, size, &long_vector[0]);
+
+    int failed = 0;
+    for (int i = 0; i < size; i++) {
+        jint opt = opt_vector[i];
+        int result;
+        if (opt < CURLOPTTYPE_OBJECTPOINT) {
+            result = (int) curl_easy_setopt(curl, (CURLoption) opt, (long) long_vector[i]);
+        } else if (opt < CURLOPTTYPE_FUNCTIONPOINT) {
+            jstring value = (jstring) env->GetObjectArrayElement(string_values, i);
+            if (value == NULL) {
+                // back to default
+                result = (int) curl_easy_setopt(curl, (CURLoption) opt, (char *) NULL);
+            } else {
+                result = setopt_string(env, holder, opt, value);
+                env->DeleteLocalRef(value);
+            }
+        } else if (opt >= CURLOPTTYPE_OFF_T) {
+            result = (int) curl_easy_setopt(curl, (CURLoption) opt, (curl_off_t) long_vector[i]);
+        } else {
+            // function point not supported
+            result = (int) CURLE_UNKNOWN_OPTION;
+        }
+        result_vector[i] = result;
+        if (result != CURLE_OK) {
+            failed++;
+        }
+    }
+    env->SetIntArrayRegion(results, 0, size, &result_vector[0]);
+    LOGV("setopt batch: size=%d, failed=%d", size, failed);
+    return failed;
+}
+
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointBytesNative
   (JNIEnv * env, jobject obj, jlong handle, jint opt, jbyteArray bytes) {
 	int result;
@@ -375,6 +1673,22 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPo
 	return result;
 }
 
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointBufferNative
+  (JNIEnv * env, jobject obj, jlong handle, jint opt, jobject buffer, jint offset) {
+    Holder* holder = (Holder*) handle;
+
+    if (opt != CURLOPT_POSTFIELDS) {
+        // other options copy or keep pointer for the handle lifetime, use byte[]
+        return (int) CURLE_UNKNOWN_OPTION;
+    }
+    char* address = (char*) env->GetDirectBufferAddress(buffer);
+    if (address == NULL) {
+        LOGW("not a direct buffer");
+        return (int) CURLE_BAD_FUNCTION_ARGUMENT;
+    }
+    return (int) holder->setPostBuffer(env, buffer, address + offset);
+}
+
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointArrayNative
   (JNIEnv *env, jobject obj, jlong handle, jint opt, jobjectArray values) {
     Holder* holder = (Holder*) handle;
@@ -416,7 +1730,7 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setFormdataNative
     }
 
     if (multi_array != NULL) {
-        CURLFORMcode code;
+        CURLFORMcode code = CURL_FORMADD_OK;
         int len = env->GetArrayLength(multi_array);
         LOGD("set name/parts size=%d", len);
         for (int i = 0; i < len; i++) {
@@ -425,6 +1739,72 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setFormdataNative
             jstring name = (jstring) env->CallObjectMethod(part, MID_MultiPart_get_name);
             jstring filename = (jstring) env->CallObjectMethod(part, MID_MultiPart_get_filename);
             jstring content_type = (jstring) env->CallObjectMethod(part, MID_MultiPart_get_content_type);
+            jstring file_path = (jstring) env->CallObjectMethod(part, MID_MultiPart_get_file_path);
+            jobject stream_cb = env->CallObjectMethod(part, MID_MultiPart_get_stream_callback);
+            if (file_path != NULL || stream_cb != NULL) {
+                // read by libcurl while sending, nothing pinned
+                const char* name_str = env->GetStringUTFChars(name, 0);
+                const char* filename_str = filename != NULL ? env->GetStringUTFChars(filename, 0) : NULL;
+                const char* content_type_str = content_type != NULL ? env->GetStringUTFChars(content_type, 0) : NULL;
+                const char* file_path_str = NULL;
+
+                struct curl_forms forms[6];
+                int n = 0;
+                bool alloc_failed = false;
+                if (file_path != NULL) {
+                    file_path_str = env->GetStringUTFChars(file_path, 0);
+                    forms[n].option = CURLFORM_FILE;
+                    forms[n++].value = file_path_str;
+                } else {
+                    if (!holder->ensureReadArray(env, FORM_STREAM_READ_SIZE)) {
+                        LOGW("alloc read array fail");
+                        alloc_failed = true;
+                    }
+                    jobject cb_ref = env->NewGlobalRef(stream_cb);
+                    holder->addGlobalRefs(cb_ref);
+                    forms[n].option = CURLFORM_STREAM;
+                    forms[n++].value = (const char*) holder->addFormStream(cb_ref);
+                    forms[n].option = CURLFORM_CONTENTSLENGTH;
+                    forms[n++].value = (const char*) (long) env->CallLongMethod(part, MID_MultiPart_get_content_length);
+                    // CURLFORM_STREAM without a filename is sent as a field
+                    forms[n].option = CURLFORM_FILENAME;
+                    forms[n++].value = filename_str != NULL ? filename_str : "file.dat";
+                }
+                if (file_path != NULL && filename_str != NULL) {
+                    forms[n].option = CURLFORM_FILENAME;
+                    forms[n++].value = filename_str;
+                }
+                if (content_type_str != NULL) {
+                    forms[n].option = CURLFORM_CONTENTTYPE;
+                    forms[n++].value = content_type_str;
+                }
+                forms[n].option = CURLFORM_END;
+
+                if (alloc_failed) {
+                    code = CURL_FORMADD_MEMORY;
+                } else {
+                    code = curl_formadd(&post, &last,
+                                        CURLFORM_COPYNAME, name_str,
+                                        CURLFORM_ARRAY, forms,
+                                        CURLFORM_END);
+                }
+
+                env->ReleaseStringUTFChars(name, name_str);
+                if (filename_str != NULL) {
+                    env->ReleaseStringUTFChars(filename, filename_str);
+                }
+                if (content_type_str != NULL) {
+                    env->ReleaseStringUTFChars(content_type, content_type_str);
+                }
+                if (file_path_str != NULL) {
+                    env->ReleaseStringUTFChars(file_path, file_path_str);
+                }
+                if (code != CURL_FORMADD_OK) {
+                    break;
+                }
+                continue;
+            }
+
             jbyteArray content = (jbyteArray) env->CallObjectMethod(part, MID_MultiPart_get_content);
             jbyte* bytes = env->GetByteArrayElements(content, 0);
             int content_length = env->GetArrayLength(content);
@@ -488,15 +1868,380 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setFormdataNative
     if (post != NULL) {
     	LOGV("set_opt CURLOPT_HTTPPOST");
 		holder->setPost(post);
+		// CURLFORM_STREAM parts, userdata is form_stream_t
+		curl_easy_setopt(curl, CURLOPT_READFUNCTION, &form_stream_read_callback);
 		return curl_easy_setopt(curl, CURLOPT_HTTPPOST, post);
     }
     return 0;
 }
 
 
+// index same as TransferStats
+static const CURLINFO TRANSFER_DOUBLE_INFO[] = {
+    CURLINFO_NAMELOOKUP_TIME,
+    CURLINFO_CONNECT_TIME,
+    CURLINFO_APPCONNECT_TIME,
+    CURLINFO_PRETRANSFER_TIME,
+    CURLINFO_STARTTRANSFER_TIME,
+    CURLINFO_TOTAL_TIME,
+    CURLINFO_REDIRECT_TIME,
+    CURLINFO_SPEED_DOWNLOAD,
+    CURLINFO_SPEED_UPLOAD,
+    CURLINFO_SIZE_DOWNLOAD,
+    CURLINFO_SIZE_UPLOAD
+};
+
+static const CURLINFO TRANSFER_LONG_INFO[] = {
+    CURLINFO_REDIRECT_COUNT,
+    CURLINFO_NUM_CONNECTS
+};
+
+JNIEXPORT jstring JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyGetTransferStatsNative
+  (JNIEnv *env, jobject obj, jlong handle, jdoubleArray double_info, jlongArray long_info) {
+    Holder* holder = (Holder*) handle;
+    CURL * curl = holder->getCurl();
+
+    const int double_size = sizeof(TRANSFER_DOUBLE_INFO) / sizeof(CURLINFO);
+    jdouble doubles[sizeof(TRANSFER_DOUBLE_INFO) / sizeof(CURLINFO)];
+    for (int i = 0; i < double_size; i++) {
+        double value = 0;
+        curl_easy_getinfo(curl, TRANSFER_DOUBLE_INFO[i], &value);
+        doubles[i] = value;
+    }
+    env->SetDoubleArrayRegion(double_info, 0, double_size, doubles);
+
+    const int long_size = sizeof(TRANSFER_LONG_INFO) / sizeof(CURLINFO);
+    jlong longs[sizeof(TRANSFER_LONG_INFO) / sizeof(CURLINFO)];
+    for (int i = 0; i < long_size; i++) {
+        long value = 0;
+        curl_easy_getinfo(curl, TRANSFER_LONG_INFO[i], &value);
+        longs[i] = value;
+    }
+    env->SetLongArrayRegion(long_info, 0, long_size, longs);
+
+    char* ip = NULL;
+    curl_easy_getinfo(curl, CURLINFO_PRIMARY_IP, &ip);
+    if (ip == NULL || ip[0] == 0) {
+        return NULL;
+    }
+    return env->NewStringUTF(ip);
+}
+
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyPerformNavite
   (JNIEnv *env, jobject obj, jlong handle) {
     Holder* holder = (Holder*) handle;
     CURL * curl = holder->getCurl();
-    return (int) curl_easy_perform(curl);
+    CURLcode code = curl_easy_perform(curl);
+    return (int) holder->finishWrite(code);
+}
+
+// curl_multi, one loop thread drives all transfers
+class MultiHolder {
+    CURLM* m_multi;
+    // curl_multi_wait returns when the read end is readable
+    int m_wakeup[2];
+    // HTTP/2 streams multiplexed over one connection per origin
+    bool m_multiplex;
+
+public:
+    MultiHolder(CURLM* multi) {
+        m_multi = multi;
+        m_multiplex = false;
+        m_wakeup[0] = -1;
+        m_wakeup[1] = -1;
+        if (pipe(m_wakeup) == 0) {
+            fcntl(m_wakeup[0], F_SETFL, O_NONBLOCK);
+            fcntl(m_wakeup[1], F_SETFL, O_NONBLOCK);
+        } else {
+            LOGW("create wakeup pipe fail");
+        }
+    }
+
+    ~MultiHolder() {
+        if (m_wakeup[0] >= 0) {
+            close(m_wakeup[0]);
+        }
+        if (m_wakeup[1] >= 0) {
+            close(m_wakeup[1]);
+        }
+        curl_multi_cleanup(m_multi);
+    }
+
+    CURLM* getMulti() {
+        return m_multi;
+    }
+
+    bool isMultiplex() {
+        return m_multiplex;
+    }
+
+    CURLMcode setopt(CURLMoption opt, long value) {
+        CURLMcode code = curl_multi_setopt(m_multi, opt, value);
+        if (opt == CURLMOPT_PIPELINING && code == CURLM_OK) {
+#ifdef CURLPIPE_MULTIPLEX
+            m_multiplex = (value & CURLPIPE_MULTIPLEX) != 0;
+#endif
+        }
+        return code;
+    }
+
+    int getWakeupFd() {
+        return m_wakeup[0];
+    }
+
+    void wakeup() {
+        if (m_wakeup[1] >= 0) {
+            char c = 1;
+            // pipe full means a wakeup is already pending
+            write(m_wakeup[1], &c, 1);
+        }
+    }
+
+    void drainWakeup() {
+        char buf[64];
+        while (read(m_wakeup[0], buf, sizeof(buf)) > 0);
+    }
+};
+
+// libcurl 7.43+ with nghttp2, CURLMOPT_PIPELINING is a boolean (http/1.1 pipelining) before
+static bool multiplex_supported() {
+#ifdef CURLPIPE_MULTIPLEX
+    curl_version_info_data* info = curl_version_info(CURLVERSION_NOW);
+    return info != NULL && info->version_num >= 0x072b00 && (info->features & CURL_VERSION_HTTP2) != 0;
+#else
+    return false;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiInitNative
+  (JNIEnv *env, jobject obj) {
+    CURLM* multi = curl_multi_init();
+    if (multi != 0) {
+        MultiHolder* holder = new MultiHolder(multi);
+        return (long) holder;
+    }
+    return 0;
+}
+
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiCleanupNative
+  (JNIEnv *env, jobject obj, jlong handle) {
+    if (handle != 0) {
+        MultiHolder* holder = (MultiHolder*) handle;
+        delete holder;
+    }
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiSetMultiplexNative
+  (JNIEnv *env, jobject obj, jlong handle) {
+#ifdef CURLPIPE_MULTIPLEX
+    if (multiplex_supported()) {
+        MultiHolder* holder = (MultiHolder*) handle;
+        if (holder->setopt(CURLMOPT_PIPELINING, CURLPIPE_MULTIPLEX) != CURLM_OK) {
+            return (int) CURLE_FAILED_INIT;
+        }
+        return (int) CURLE_OK;
+    }
+#endif
+    return (int) CURLE_NOT_BUILT_IN;
+}
+
+JNIEXPORT jboolean JNICALL Java_com_wealoha_libcurldroid_CurlMulti_isMultiplexSupportedNative
+  (JNIEnv *env, jclass cls) {
+    return multiplex_supported() ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiAddHandleNative
+  (JNIEnv *env, jobject obj, jlong handle, jlong easy_handle) {
+    MultiHolder* holder = (MultiHolder*) handle;
+    Holder* easy = (Holder*) easy_handle;
+    // find the Holder back in curl_multi_info_read
+    curl_easy_setopt(easy->getCurl(), CURLOPT_PRIVATE, (void *) easy);
+#ifdef CURLPIPE_MULTIPLEX
+    if (holder->isMultiplex()) {
+        // wait for a connection being set up to the same origin, instead of opening another
+        curl_easy_setopt(easy->getCurl(), CURLOPT_PIPEWAIT, 1L);
+    }
+#endif
+    return (int) curl_multi_add_handle(holder->getMulti(), easy->getCurl());
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiRemoveHandleNative
+  (JNIEnv *env, jobject obj, jlong handle, jlong easy_handle) {
+    MultiHolder* holder = (MultiHolder*) handle;
+    Holder* easy = (Holder*) easy_handle;
+    return (int) curl_multi_remove_handle(holder->getMulti(), easy->getCurl());
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiPerformNative
+  (JNIEnv *env, jobject obj, jlong handle, jintArray running) {
+    MultiHolder* holder = (MultiHolder*) handle;
+    int running_handles = 0;
+    CURLMcode code = curl_multi_perform(holder->getMulti(), &running_handles);
+    jint value = running_handles;
+    env->SetIntArrayRegion(running, 0, 1, &value);
+    return (int) code;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiWaitNative
+  (JNIEnv *env, jobject obj, jlong handle, jint timeout_ms) {
+    MultiHolder* holder = (MultiHolder*) handle;
+    struct curl_waitfd wakeup_fd;
+    int numfds = 0;
+    wakeup_fd.fd = holder->getWakeupFd();
+    wakeup_fd.events = CURL_WAIT_POLLIN;
+    wakeup_fd.revents = 0;
+    CURLMcode code = curl_multi_wait(holder->getMulti(), &wakeup_fd, wakeup_fd.fd >= 0 ? 1 : 0, timeout_ms, &numfds);
+    if (wakeup_fd.revents != 0) {
+        holder->drainWakeup();
+    }
+    return (int) code;
+}
+
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiWakeupNative
+  (JNIEnv *env, jobject obj, jlong handle) {
+    MultiHolder* holder = (MultiHolder*) handle;
+    holder->wakeup();
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiInfoReadNative
+  (JNIEnv *env, jobject obj, jlong handle, jlongArray done) {
+    MultiHolder* holder = (MultiHolder*) handle;
+    CURLMsg* msg;
+    int msgs_in_queue = 0;
+    while ((msg = curl_multi_info_read(holder->getMulti(), &msgs_in_queue)) != NULL) {
+        if (msg->msg != CURLMSG_DONE) {
+            continue;
+        }
+        void* easy = NULL;
+        curl_easy_getinfo(msg->easy_handle, CURLINFO_PRIVATE, &easy);
+        // easy handle and result code
+        jlong values[2];
+        values[0] = (long) easy;
+        values[1] = (int) ((Holder*) easy)->finishWrite(msg->data.result);
+        env->SetLongArrayRegion(done, 0, 2, values);
+        return msgs_in_queue;
+    }
+    // nothing done
+    return -1;
+}
+
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_CurlShare_curlShareInitNative
+  (JNIEnv *env, jobject obj) {
+    CURLSH* share = curl_share_init();
+    if (share != 0) {
+        ShareHolder* holder = new ShareHolder(share);
+        return (long) holder;
+    }
+    return 0;
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlShare_curlShareSetoptNative
+  (JNIEnv *env, jobject obj, jlong handle, jint opt, jint value) {
+    ShareHolder* holder = (ShareHolder*) handle;
+    // CURLSHOPT_SHARE / CURLSHOPT_UNSHARE with curl_lock_data
+    return (int) curl_share_setopt(holder->getShare(), (CURLSHoption) opt, (int) value);
+}
+
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlShare_curlShareCleanupNative
+  (JNIEnv *env, jobject obj, jlong handle) {
+    ShareHolder* holder = (ShareHolder*) handle;
+    CURLSHcode code = curl_share_cleanup(holder->getShare());
+    if (code == CURLSHE_OK) {
+        delete holder;
+    } else {
+        LOGW("curl_share_cleanup fail %d", code);
+    }
+    return (int) code;
+}
+
+JNIEXPORT jboolean JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_isSupportedNative
+  (JNIEnv *env, jclass cls) {
+#ifdef CURLDROID_USE_OPENSSL
+    return JNI_TRUE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_putSessionNative
+  (JNIEnv *env, jclass cls, jstring host, jbyteArray session) {
+#ifdef CURLDROID_USE_OPENSSL
+    jsize len = env->GetArrayLength(session);
+    jbyte* bytes = env->GetByteArrayElements(session, 0);
+    const unsigned char* p = (const unsigned char*) bytes;
+    SSL_SESSION* ssl_session = d2i_SSL_SESSION(NULL, &p, len);
+    env->ReleaseByteArrayElements(session, bytes, JNI_ABORT);
+    if (ssl_session == NULL) {
+        return JNI_FALSE;
+    }
+    if (SSL_SESSION_get_time(ssl_session) + SSL_SESSION_get_timeout(ssl_session) < time(NULL)) {
+        SSL_SESSION_free(ssl_session);
+        return JNI_FALSE;
+    }
+    const char* host_str = env->GetStringUTFChars(host, 0);
+    put_tls_session(host_str, ssl_session);
+    env->ReleaseStringUTFChars(host, host_str);
+    return JNI_TRUE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jobjectArray JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_getSessionHostsNative
+  (JNIEnv *env, jclass cls) {
+    std::vector<std::string> hosts;
+#ifdef CURLDROID_USE_OPENSSL
+    pthread_mutex_lock(&tls_sessions_lock);
+    for (std::map<std::string, SSL_SESSION*>::iterator it = tls_sessions.begin(); it != tls_sessions.end(); ++it) {
+        hosts.push_back(it->first);
+    }
+    pthread_mutex_unlock(&tls_sessions_lock);
+#endif
+    jobjectArray result = env->NewObjectArray(hosts.size(), CLS_String, NULL);
+    for (size_t i = 0; i < hosts.size(); i++) {
+        jstring host = env->NewStringUTF(hosts[i].c_str());
+        env->SetObjectArrayElement(result, i, host);
+        env->DeleteLocalRef(host);
+    }
+    return result;
+}
+
+JNIEXPORT jbyteArray JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_getSessionNative
+  (JNIEnv *env, jclass cls, jstring host) {
+#ifdef CURLDROID_USE_OPENSSL
+    const char* host_str = env->GetStringUTFChars(host, 0);
+    std::vector<unsigned char> der;
+    pthread_mutex_lock(&tls_sessions_lock);
+    std::map<std::string, SSL_SESSION*>::iterator it = tls_sessions.find(host_str);
+    if (it != tls_sessions.end()) {
+        int len = i2d_SSL_SESSION(it->second, NULL);
+        if (len > 0) {
+            der.resize(len);
+            unsigned char* p = &der[0];
+            i2d_SSL_SESSION(it->second, &p);
+        }
+    }
+    pthread_mutex_unlock(&tls_sessions_lock);
+    env->ReleaseStringUTFChars(host, host_str);
+    if (der.empty()) {
+        return NULL;
+    }
+    jbyteArray result = env->NewByteArray(der.size());
+    env->SetByteArrayRegion(result, 0, der.size(), (const jbyte*) &der[0]);
+    return result;
+#else
+    return NULL;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_getSessionVersionNative
+  (JNIEnv *env, jclass cls) {
+#ifdef CURLDROID_USE_OPENSSL
+    pthread_mutex_lock(&tls_sessions_lock);
+    jlong version = tls_sessions_version;
+    pthread_mutex_unlock(&tls_sessions_lock);
+    return version;
+#else
+    return 0;
+#endif
 }
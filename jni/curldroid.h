@@ -39,6 +39,14 @@ JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyInitNative
 JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyCleanupNative
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasyResetNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyResetNative
+  (JNIEnv *, jobject, jlong);
+
 /*
  * Class:     com_wealoha_libcurldroid_Curl
  * Method:    curlEasySetoptLongNative
@@ -55,6 +63,110 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptLongNati
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptFunctionNative
   (JNIEnv *, jobject, jlong, jint, jobject);
 
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasySetoptBufferFunctionNative
+ * Signature: (JILcom/wealoha/libcurldroid/Curl/Callback;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptBufferFunctionNative
+  (JNIEnv *, jobject, jlong, jint, jobject, jint);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasySetoptStreamReadFunctionNative
+ * Signature: (JILcom/wealoha/libcurldroid/Curl/Callback;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptStreamReadFunctionNative
+  (JNIEnv *, jobject, jlong, jint, jobject, jint);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasySetoptHeaderFunctionNative
+ * Signature: (JILcom/wealoha/libcurldroid/Curl/Callback;)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptHeaderFunctionNative
+  (JNIEnv *, jobject, jlong, jint, jobject);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    setCancellableNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setCancellableNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasyCancelNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyCancelNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    setWriteFileNative
+ * Signature: (JLjava/lang/String;JZ)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setWriteFileNative
+  (JNIEnv *, jobject, jlong, jstring, jlong, jboolean);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    setWriteFileRangeNative
+ * Signature: (JLjava/lang/String;J)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setWriteFileRangeNative
+  (JNIEnv *, jobject, jlong, jstring, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    getWriteFileLengthNative
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_Curl_getWriteFileLengthNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    getWriteFileCrc32Native
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_Curl_getWriteFileCrc32Native
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    setSslCtxFlagsNative
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setSslCtxFlagsNative
+  (JNIEnv *, jobject, jlong, jint);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    setCaBundleNative
+ * Signature: (JLjava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setCaBundleNative
+  (JNIEnv *, jobject, jlong, jstring);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    setAccumulateBodyNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setAccumulateBodyNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    takeAccumulatedBodyNative
+ * Signature: (J)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_com_wealoha_libcurldroid_Curl_takeAccumulatedBodyNative
+  (JNIEnv *, jobject, jlong);
+
 /*
  * Class:     com_wealoha_libcurldroid_Curl
  * Method:    curlEasySetoptObjectPointNative
@@ -63,6 +175,14 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptFunction
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointNative
   (JNIEnv *, jobject, jlong, jint, jstring);
 
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasySetoptBatchNative
+ * Signature: (JI[I[J[Ljava/lang/String;[I)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptBatchNative
+  (JNIEnv *, jobject, jlong, jint, jintArray, jlongArray, jobjectArray, jintArray);
+
 /*
  * Class:     com_wealoha_libcurldroid_Curl
  * Method:    curlEasySetoptObjectPointBytesNative
@@ -71,6 +191,14 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPo
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointBytesNative
   (JNIEnv *, jobject, jlong, jint, jbyteArray);
 
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasySetoptObjectPointBufferNative
+ * Signature: (JILjava/nio/ByteBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointBufferNative
+  (JNIEnv *, jobject, jlong, jint, jobject, jint);
+
 /*
  * Class:     com_wealoha_libcurldroid_Curl
  * Method:    curlEasySetoptObjectPointArrayNative
@@ -79,6 +207,14 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPo
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointArrayNative
   (JNIEnv *, jobject, jlong, jint, jobjectArray);
 
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasySetoptObjectPointShareNative
+ * Signature: (JIJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPointShareNative
+  (JNIEnv *, jobject, jlong, jint, jlong);
+
 /*
  * Class:     com_wealoha_libcurldroid_Curl
  * Method:    setFormdataNative
@@ -87,6 +223,14 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasySetoptObjectPo
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setFormdataNative
   (JNIEnv *, jobject, jlong, jobjectArray);
 
+/*
+ * Class:     com_wealoha_libcurldroid_Curl
+ * Method:    curlEasyGetTransferStatsNative
+ * Signature: (J[D[J)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyGetTransferStatsNative
+  (JNIEnv *, jobject, jlong, jdoubleArray, jlongArray);
+
 /*
  * Class:     com_wealoha_libcurldroid_Curl
  * Method:    curlEasyPerformNavite
@@ -95,6 +239,17 @@ JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_setFormdataNative
 JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_Curl_curlEasyPerformNavite
   (JNIEnv *, jobject, jlong);
 
+#ifdef __cplusplus
+}
+#endif
+#endif
+/* Header for class com_wealoha_libcurldroid_Curl_BufferWriteCallback */
+
+#ifndef _Included_com_wealoha_libcurldroid_Curl_BufferWriteCallback
+#define _Included_com_wealoha_libcurldroid_Curl_BufferWriteCallback
+#ifdef __cplusplus
+extern "C" {
+#endif
 #ifdef __cplusplus
 }
 #endif
@@ -110,6 +265,17 @@ extern "C" {
 }
 #endif
 #endif
+/* Header for class com_wealoha_libcurldroid_Curl_HeaderCallback */
+
+#ifndef _Included_com_wealoha_libcurldroid_Curl_HeaderCallback
+#define _Included_com_wealoha_libcurldroid_Curl_HeaderCallback
+#ifdef __cplusplus
+extern "C" {
+#endif
+#ifdef __cplusplus
+}
+#endif
+#endif
 /* Header for class com_wealoha_libcurldroid_Curl_ReadCallback */
 
 #ifndef _Included_com_wealoha_libcurldroid_Curl_ReadCallback
@@ -121,6 +287,17 @@ extern "C" {
 }
 #endif
 #endif
+/* Header for class com_wealoha_libcurldroid_Curl_StreamReadCallback */
+
+#ifndef _Included_com_wealoha_libcurldroid_Curl_StreamReadCallback
+#define _Included_com_wealoha_libcurldroid_Curl_StreamReadCallback
+#ifdef __cplusplus
+extern "C" {
+#endif
+#ifdef __cplusplus
+}
+#endif
+#endif
 /* Header for class com_wealoha_libcurldroid_Curl_WriteCallback */
 
 #ifndef _Included_com_wealoha_libcurldroid_Curl_WriteCallback
@@ -132,3 +309,202 @@ extern "C" {
 }
 #endif
 #endif
+/* Header for class com_wealoha_libcurldroid_CurlMulti */
+
+#ifndef _Included_com_wealoha_libcurldroid_CurlMulti
+#define _Included_com_wealoha_libcurldroid_CurlMulti
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiInitNative
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiInitNative
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiCleanupNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiCleanupNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiSetMultiplexNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiSetMultiplexNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    isMultiplexSupportedNative
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_wealoha_libcurldroid_CurlMulti_isMultiplexSupportedNative
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiAddHandleNative
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiAddHandleNative
+  (JNIEnv *, jobject, jlong, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiRemoveHandleNative
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiRemoveHandleNative
+  (JNIEnv *, jobject, jlong, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiPerformNative
+ * Signature: (J[I)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiPerformNative
+  (JNIEnv *, jobject, jlong, jintArray);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiWaitNative
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiWaitNative
+  (JNIEnv *, jobject, jlong, jint);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiWakeupNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiWakeupNative
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlMulti
+ * Method:    curlMultiInfoReadNative
+ * Signature: (J[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlMulti_curlMultiInfoReadNative
+  (JNIEnv *, jobject, jlong, jlongArray);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
+/* Header for class com_wealoha_libcurldroid_CurlMulti_Callback */
+
+#ifndef _Included_com_wealoha_libcurldroid_CurlMulti_Callback
+#define _Included_com_wealoha_libcurldroid_CurlMulti_Callback
+#ifdef __cplusplus
+extern "C" {
+#endif
+#ifdef __cplusplus
+}
+#endif
+#endif
+/* Header for class com_wealoha_libcurldroid_CurlShare */
+
+#ifndef _Included_com_wealoha_libcurldroid_CurlShare
+#define _Included_com_wealoha_libcurldroid_CurlShare
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     com_wealoha_libcurldroid_CurlShare
+ * Method:    curlShareInitNative
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_CurlShare_curlShareInitNative
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlShare
+ * Method:    curlShareSetoptNative
+ * Signature: (JII)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlShare_curlShareSetoptNative
+  (JNIEnv *, jobject, jlong, jint, jint);
+
+/*
+ * Class:     com_wealoha_libcurldroid_CurlShare
+ * Method:    curlShareCleanupNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_com_wealoha_libcurldroid_CurlShare_curlShareCleanupNative
+  (JNIEnv *, jobject, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
+/* Header for class com_wealoha_libcurldroid_CurlShare_LockData */
+
+#ifndef _Included_com_wealoha_libcurldroid_CurlShare_LockData
+#define _Included_com_wealoha_libcurldroid_CurlShare_LockData
+#ifdef __cplusplus
+extern "C" {
+#endif
+#ifdef __cplusplus
+}
+#endif
+#endif
+/* Header for class com_wealoha_libcurldroid_TlsSessionStore */
+
+#ifndef _Included_com_wealoha_libcurldroid_TlsSessionStore
+#define _Included_com_wealoha_libcurldroid_TlsSessionStore
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     com_wealoha_libcurldroid_TlsSessionStore
+ * Method:    isSupportedNative
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_isSupportedNative
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_wealoha_libcurldroid_TlsSessionStore
+ * Method:    putSessionNative
+ * Signature: (Ljava/lang/String;[B)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_putSessionNative
+  (JNIEnv *, jclass, jstring, jbyteArray);
+
+/*
+ * Class:     com_wealoha_libcurldroid_TlsSessionStore
+ * Method:    getSessionHostsNative
+ * Signature: ()[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_getSessionHostsNative
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_wealoha_libcurldroid_TlsSessionStore
+ * Method:    getSessionNative
+ * Signature: (Ljava/lang/String;)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_getSessionNative
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     com_wealoha_libcurldroid_TlsSessionStore
+ * Method:    getSessionVersionNative
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_wealoha_libcurldroid_TlsSessionStore_getSessionVersionNative
+  (JNIEnv *, jclass);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
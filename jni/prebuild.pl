@@ -7,6 +7,7 @@ my $ndk_home = "/Users/javamonk/adt-bundle-mac-x86_64-20140702/ndk/";
 my $toolchains = "/Users/javamonk/adt-bundle-mac-x86_64-20140702/toolchains/";
 my $curl_src = "shared/curl"; # relative to current path (ln -s)
 my $cares_src = "shared/c-ares"; # relative to current path (ln -s)
+my $nghttp2_src = "shared/nghttp2"; # relative to current path (ln -s), HTTP/2
 my $pwd = getcwd;
 
 # names compiler need
@@ -57,6 +58,19 @@ foreach my $arch(@arches) {
 	$shell .= "cd $pwd;\n";
     $shell .= "cp $pwd/$cares_src/.libs/libcares.so $pwd/$libs{$arch}/\n";
     
+    # nghttp2 (library only)
+    $shell .= "cd $nghttp2_src;\n";
+    $shell .= "make clean\n";
+    $shell .= "CC=mipsel-linux-android-gcc " if $arch eq 'mipsel';
+    $shell .= "CC=i686-linux-android-gcc " if $arch eq 'i686';
+    $shell .= qq{CFLAGS="-march=$arch" } if $arch =~ /arm/;
+    $shell .= qq{./configure --host=$host --enable-lib-only --enable-shared --disable-static --prefix=$pwd/$curl_src/nghttp2_$arch;\n};
+    $shell .= "sh $pwd/fix_libtool.sh\n";
+    $shell .= "make -j 4\n";
+    $shell .= "make install\n";
+    $shell .= "cd $pwd;\n";
+    $shell .= "cp $pwd/$nghttp2_src/lib/.libs/libnghttp2.so $pwd/$libs{$arch}/\n";
+    
     
     # curl
     $shell .= "cd $curl_src;\n";
@@ -67,7 +81,7 @@ foreach my $arch(@arches) {
     $shell .= "CC=mipsel-linux-android-gcc " if $arch eq 'mipsel';
     $shell .= "CC=i686-linux-android-gcc " if $arch eq 'i686';
     $shell .= qq{CFLAGS="-march=$arch" } if $arch =~ /arm/;
-    $shell .= qq{./configure --host=$host --enable-ares=$pwd/$curl_src/cares_$arch --enable-shared --disable-static;\n};
+    $shell .= qq{./configure --host=$host --enable-ares=$pwd/$curl_src/cares_$arch --with-nghttp2=$pwd/$curl_src/nghttp2_$arch --enable-shared --disable-static;\n};
     $shell .= "sh $pwd/fix_libtool.sh\n";
     $shell .= "make -j 4\n";
     #$shell .= "make install\n";
@@ -1,5 +1,6 @@
 package com.wealoha.libcurldroid;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import android.util.Log;
@@ -43,6 +44,9 @@ public class Curl {
 	
 	private static boolean INIT = false;
 	
+	// flags of setSslCtxFlagsNative, things done in CURLOPT_SSL_CTX_FUNCTION (OpenSSL)
+	private static final int SSL_CTX_PERSIST_SESSION = 1;
+	
 	public interface WriteCallback extends Callback {
 		/**
 		 * Called when data received from peer (for example: header, body)
@@ -54,6 +58,44 @@ public class Curl {
 		public int readData(byte[] data);
 	}
 	
+	public interface BufferWriteCallback extends Callback {
+		/**
+		 * Called when data received from peer, chunks are coalesced in native until buffer is full or transfer done.
+		 * 
+		 * @param buffer direct buffer reused by every call, data in [0, length), position and limit are not set
+		 * @param length
+		 * @return the number of bytes actually taken care of.
+		 * @see http://curl.haxx.se/libcurl/c/CURLOPT_WRITEFUNCTION.html
+		 */
+		public int readData(ByteBuffer buffer, int length);
+	}
+	
+	public interface StreamReadCallback extends Callback {
+		/**
+		 * Called when request body need send to peer
+		 * 
+		 * @param buffer reused by every call, fill from 0
+		 * @param length max bytes to fill, may less than buffer.length
+		 * @return bytes filled, 0 means end of body, -1 abort transfer
+		 * @see http://curl.haxx.se/libcurl/c/CURLOPT_READFUNCTION.html
+		 */
+		public int writeData(byte[] buffer, int length);
+	}
+	
+	public interface HeaderCallback extends Callback {
+		/**
+		 * Called once per response header block (parsed in native), 1xx blocks are skipped.
+		 * With redirects, called for each response.
+		 * 
+		 * @param status
+		 * @param statusLine without CRLF, for example: HTTP/1.1 200 OK
+		 * @param names
+		 * @param values same size as names, value of names[i] is values[i]
+		 * @see http://curl.haxx.se/libcurl/c/CURLOPT_HEADERFUNCTION.html
+		 */
+		public void onHeaders(int status, String statusLine, String[] names, String[] values);
+	}
+	
 	public interface ReadCallback extends Callback {
 		/**
 		 * Called when data need send to peer (for example: header, form)
@@ -84,6 +126,16 @@ public class Curl {
 		INIT = true;
 	}
 	
+	/**
+	 * Resolve hosts in background, pinned into handles of {@link CurlHttp} when done
+	 * 
+	 * @param hosts
+	 * @see DnsCache
+	 */
+	public static void prefetchDns(String... hosts) {
+		DnsCache.getDefault().prefetch(hosts);
+	}
+	
 	private native static int curlGlobalInitNative(int flags);
 	
 	private native static void curlGlobalCleanupNative();
@@ -108,6 +160,37 @@ public class Curl {
 	
 	private native void curlEasyCleanupNative(long handle);
 	
+	/**
+	 * Reset all options to default (curl_easy_reset),
+	 * live connections, dns cache and ssl session cache are kept.
+	 * 
+	 * @see http://curl.haxx.se/libcurl/c/curl_easy_reset.html
+	 */
+	public void curlEasyReset() {
+		Log.v(TAG, "curlEasyReset: " + handle);
+		if (handle != 0) {
+			curlEasyResetNative(handle);
+		}
+	}
+	
+	private native void curlEasyResetNative(long handle);
+	
+	/**
+	 * 
+	 * @return native handle, for {@link CurlMulti}
+	 */
+	long getHandle() {
+		return handle;
+	}
+	
+	/**
+	 * 
+	 * @return false if not init or already cleanup
+	 */
+	public boolean isInit() {
+		return handle != 0;
+	}
+	
 	/**
 	 * 
 	 * @param opt {@link OptLong}
@@ -128,6 +211,193 @@ public class Curl {
 	
 	private native int curlEasySetoptFunctionNative(long handle, int opt, Callback callback);
 	
+	/**
+	 * 
+	 * @param opt {@link OptFunctionPoint#CURLOPT_WRITEFUNCTION} only
+	 * @param callback
+	 * @param bufferSize bytes coalesced before callback called, buffer is allocated once and kept by the handle
+	 * @return
+	 */
+	public CurlCode curlEasySetopt(OptFunctionPoint opt, BufferWriteCallback callback, int bufferSize) {
+		Log.v(TAG, "curlEastSetopt: " + opt + "=" + callback + ", bufferSize=" + bufferSize);
+		return CurlCode.fromValue(curlEasySetoptBufferFunctionNative(handle, opt.getValue(), callback, bufferSize));
+	}
+	
+	private native int curlEasySetoptBufferFunctionNative(long handle, int opt, Callback callback, int bufferSize);
+	
+	/**
+	 * 
+	 * @param opt {@link OptFunctionPoint#CURLOPT_READFUNCTION} only
+	 * @param callback
+	 * @param bufferSize size of the byte[] passed to callback, allocated once and kept by the handle
+	 * @return
+	 */
+	public CurlCode curlEasySetoptRead(OptFunctionPoint opt, StreamReadCallback callback, int bufferSize) {
+		Log.v(TAG, "curlEastSetopt: " + opt + "=" + callback + ", bufferSize=" + bufferSize);
+		return CurlCode.fromValue(curlEasySetoptStreamReadFunctionNative(handle, opt.getValue(), callback, bufferSize));
+	}
+	
+	private native int curlEasySetoptStreamReadFunctionNative(long handle, int opt, Callback callback, int bufferSize);
+	
+	/**
+	 * 
+	 * @param opt {@link OptFunctionPoint#CURLOPT_HEADERFUNCTION} only
+	 * @param callback
+	 * @return
+	 */
+	public CurlCode curlEasySetopt(OptFunctionPoint opt, HeaderCallback callback) {
+		Log.v(TAG, "curlEastSetopt: " + opt + "=" + callback);
+		return CurlCode.fromValue(curlEasySetoptHeaderFunctionNative(handle, opt.getValue(), callback));
+	}
+	
+	private native int curlEasySetoptHeaderFunctionNative(long handle, int opt, Callback callback);
+	
+	/**
+	 * Check cancel flag while transfer running (CURLOPT_XFERINFOFUNCTION in native, no java call)
+	 * 
+	 * @return
+	 * @see #cancel()
+	 */
+	public CurlCode setCancellable() {
+		return CurlCode.fromValue(setCancellableNative(handle));
+	}
+	
+	private native int setCancellableNative(long handle);
+	
+	/**
+	 * Abort running transfer ({@link CurlCode#CURLE_ABORTED_BY_CALLBACK}), {@link #setCancellable()} required.<br/>
+	 * 
+	 * The only method safe to call from another thread, flag is cleared by {@link #curlEasyReset()}
+	 */
+	public void cancel() {
+		long h = handle;
+		if (h != 0) {
+			curlEasyCancelNative(h);
+		}
+	}
+	
+	private native void curlEasyCancelNative(long handle);
+	
+	/**
+	 * Body written to file by native directly (truncated first), file closed when transfer done.<br/>
+	 * 
+	 * Replaces {@link OptFunctionPoint#CURLOPT_WRITEFUNCTION}
+	 * 
+	 * @param path
+	 * @param crc32 compute CRC32 while writing
+	 * @return {@link CurlCode#CURLE_WRITE_ERROR} if open fail
+	 */
+	public CurlCode setWriteFile(String path, boolean crc32) {
+		return setWriteFile(path, 0, crc32);
+	}
+	
+	/**
+	 * Resume writing a file at offset, bytes after offset dropped.<br/>
+	 * 
+	 * Decided on the first write: a 206 response is appended at offset, other 2xx rewrite the file from start,
+	 * body of other responses is discarded and bytes before offset kept.
+	 * 
+	 * @param path
+	 * @param offset 0: same as {@link #setWriteFile(String, boolean)}
+	 * @param crc32 compute CRC32 of the whole file (bytes before offset read back)
+	 * @return {@link CurlCode#CURLE_WRITE_ERROR} if open fail
+	 * @see OptObjectPoint#CURLOPT_RANGE
+	 */
+	public CurlCode setWriteFile(String path, long offset, boolean crc32) {
+		Log.v(TAG, "setWriteFile: " + path + " offset=" + offset);
+		return CurlCode.fromValue(setWriteFileNative(handle, path, offset, crc32));
+	}
+	
+	private native int setWriteFileNative(long handle, String path, long offset, boolean crc32);
+	
+	/**
+	 * Write a range of body at offset, bytes outside kept (a segment of the file).<br/>
+	 * 
+	 * Transfer fails with {@link CurlCode#CURLE_WRITE_ERROR} if response is not 206.
+	 * 
+	 * @param path
+	 * @param offset first byte of the range requested by {@link OptObjectPoint#CURLOPT_RANGE}
+	 * @return {@link CurlCode#CURLE_WRITE_ERROR} if open fail
+	 */
+	public CurlCode setWriteFileRange(String path, long offset) {
+		Log.v(TAG, "setWriteFileRange: " + path + " offset=" + offset);
+		return CurlCode.fromValue(setWriteFileRangeNative(handle, path, offset));
+	}
+	
+	private native int setWriteFileRangeNative(long handle, String path, long offset);
+	
+	/**
+	 * 
+	 * @return length of the file written by {@link #setWriteFile(String, long, boolean)}
+	 */
+	public long getWriteFileLength() {
+		return getWriteFileLengthNative(handle);
+	}
+	
+	private native long getWriteFileLengthNative(long handle);
+	
+	/**
+	 * 
+	 * @return CRC32 of the file written by {@link #setWriteFile(String, long, boolean)}, -1 if not computed
+	 */
+	public long getWriteFileCrc32() {
+		return getWriteFileCrc32Native(handle);
+	}
+	
+	private native long getWriteFileCrc32Native(long handle);
+	
+	/**
+	 * Resume TLS sessions kept by {@link TlsSessionStore}, new sessions are kept there.
+	 * 
+	 * @return {@link CurlCode#CURLE_NOT_BUILT_IN} if not built with OpenSSL
+	 */
+	public CurlCode setTlsSessionPersistent() {
+		Log.v(TAG, "setTlsSessionPersistent");
+		return CurlCode.fromValue(setSslCtxFlagsNative(handle, SSL_CTX_PERSIST_SESSION));
+	}
+	
+	private native int setSslCtxFlagsNative(long handle, int flags);
+	
+	/**
+	 * Verify peer with a CA bundle parsed once per process and shared by all handles (OpenSSL X509_STORE),
+	 * instead of {@link OptObjectPoint#CURLOPT_CAINFO} parsed by every new connection.
+	 * 
+	 * @param path PEM file
+	 * @return {@link CurlCode#CURLE_SSL_CACERT_BADFILE} if load fail, {@link CurlCode#CURLE_NOT_BUILT_IN} if not built with OpenSSL
+	 */
+	public CurlCode setCaBundle(String path) {
+		Log.v(TAG, "setCaBundle: " + path);
+		return CurlCode.fromValue(setCaBundleNative(handle, path));
+	}
+	
+	private native int setCaBundleNative(long handle, String path);
+	
+	/**
+	 * Body accumulated in a native buffer (pre-sized from Content-Length), no java callback per chunk,
+	 * take it by {@link #takeAccumulatedBody()} after perform.<br/>
+	 * 
+	 * Replaces {@link OptFunctionPoint#CURLOPT_WRITEFUNCTION}
+	 * 
+	 * @return
+	 */
+	public CurlCode setAccumulateBody() {
+		Log.v(TAG, "setAccumulateBody");
+		return CurlCode.fromValue(setAccumulateBodyNative(handle));
+	}
+	
+	private native int setAccumulateBodyNative(long handle);
+	
+	/**
+	 * copy body accumulated to java, native buffer is emptied
+	 * 
+	 * @return empty if nothing received
+	 */
+	public byte[] takeAccumulatedBody() {
+		return takeAccumulatedBodyNative(handle);
+	}
+	
+	private native byte[] takeAccumulatedBodyNative(long handle);
+	
 	public CurlCode curlEasySetopt(OptObjectPoint opt, String value) {
 		Log.v(TAG, "curlEastSetopt: " + opt + "=" + value);
 		return CurlCode.fromValue(curlEasySetoptObjectPointNative(handle, opt.getValue(), value));
@@ -136,6 +406,37 @@ public class Curl {
 	
 	private native int curlEasySetoptObjectPointNative(long handle, int opt, String value);
 	
+	/**
+	 * Apply all options in one jni call, result of each option: {@link CurlOptBatch#getResult(int)}
+	 * 
+	 * @param batch
+	 * @return {@link CurlCode#CURLE_OK} if all success, or result of the first option failed
+	 */
+	public CurlCode curlEasySetopt(CurlOptBatch batch) {
+		int size = batch.size();
+		if (size == 0) {
+			return CurlCode.CURLE_OK;
+		}
+		Log.v(TAG, "curlEastSetopt batch: " + size);
+		int failed = curlEasySetoptBatchNative(handle, size, batch.getOpts(), batch.getLongValues(), batch.getStringValues(), batch.getResults());
+		if (failed == 0) {
+			return CurlCode.CURLE_OK;
+		}
+		CurlCode first = null;
+		for (int i = 0; i < size; i++) {
+			CurlCode code = batch.getResult(i);
+			if (code != CurlCode.CURLE_OK) {
+				Log.w(TAG, "curlEastSetopt fail: opt=" + batch.getOpt(i) + ", code=" + code);
+				if (first == null) {
+					first = code;
+				}
+			}
+		}
+		return first;
+	}
+	
+	private native int curlEasySetoptBatchNative(long handle, int size, int[] opts, long[] longValues, String[] stringValues, int[] results);
+	
 	public CurlCode curlEasySetopt(OptObjectPoint opt, byte[] value) {
 		Log.v(TAG, "curlEastSetopt: " + opt + "=" + value);
 		return CurlCode.fromValue(curlEasySetoptObjectPointBytesNative(handle, opt.getValue(), value));
@@ -143,12 +444,46 @@ public class Curl {
 	
 	private native int curlEasySetoptObjectPointBytesNative(long handle, int opt, byte[] value);
 	
+	/**
+	 * Pass the memory of a direct buffer to libcurl, no copy.
+	 * Bytes from position to limit are sent, set {@link OptLong#CURLOPT_POSTFIELDSIZE} to {@link ByteBuffer#remaining()}.<br/>
+	 * 
+	 * Buffer is referenced until transfer done, don't modify it before.
+	 * 
+	 * @param opt only {@link OptObjectPoint#CURLOPT_POSTFIELDS}
+	 * @param value direct buffer
+	 * @return
+	 */
+	public CurlCode curlEasySetopt(OptObjectPoint opt, ByteBuffer value) {
+		Log.v(TAG, "curlEastSetopt: " + opt + "=" + value);
+		if (!value.isDirect()) {
+			throw new IllegalArgumentException("direct buffer required");
+		}
+		return CurlCode.fromValue(curlEasySetoptObjectPointBufferNative(handle, opt.getValue(), value, value.position()));
+	}
+	
+	private native int curlEasySetoptObjectPointBufferNative(long handle, int opt, ByteBuffer value, int offset);
+	
 	public CurlCode curlEasySetopt(OptObjectPoint opt, String[] values) {
 		Log.v(TAG, "curlEastSetopt: " + opt + "=" + values);
 		return CurlCode.fromValue(curlEasySetoptObjectPointArrayNative(handle, opt.getValue(), values));
 	}
 	private native int curlEasySetoptObjectPointArrayNative(long handle, int opt, String[] value);
 	
+	/**
+	 * 
+	 * @param opt {@link OptObjectPoint#CURLOPT_SHARE}
+	 * @param share null: detach from previous share
+	 * @return
+	 */
+	public CurlCode curlEasySetopt(OptObjectPoint opt, CurlShare share) {
+		Log.v(TAG, "curlEastSetopt: " + opt + "=" + share);
+		long shareHandle = share == null ? 0 : share.getHandle();
+		return CurlCode.fromValue(curlEasySetoptObjectPointShareNative(handle, opt.getValue(), shareHandle));
+	}
+	
+	private native int curlEasySetoptObjectPointShareNative(long handle, int opt, long shareHandle);
+	
 	/**
 	 * if set multiple times, previous form will be cleared!
 	 * 
@@ -165,6 +500,20 @@ public class Curl {
 	
 	private native int setFormdataNative(long handle, MultiPart[] multiArray);
 	
+	/**
+	 * Timing and connection info of the last transfer
+	 * 
+	 * @return
+	 */
+	public TransferStats getTransferStats() {
+		double[] doubleInfo = new double[TransferStats.DOUBLE_INFO_SIZE];
+		long[] longInfo = new long[TransferStats.LONG_INFO_SIZE];
+		String primaryIp = curlEasyGetTransferStatsNative(handle, doubleInfo, longInfo);
+		return new TransferStats(doubleInfo, longInfo, primaryIp);
+	}
+	
+	private native String curlEasyGetTransferStatsNative(long handle, double[] doubleInfo, long[] longInfo);
+	
 	public CurlCode curlEasyPerform() {
 		Log.v(TAG, "curlEasyPerform");
 		return CurlCode.fromValue(curlEasyPerformNavite(handle));
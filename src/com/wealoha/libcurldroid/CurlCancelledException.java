@@ -0,0 +1,13 @@
+package com.wealoha.libcurldroid;
+
+/**
+ * Transfer aborted by {@link CurlHttp#cancel()}
+ */
+public class CurlCancelledException extends CurlException {
+
+	private static final long serialVersionUID = 3816271946260154187L;
+
+	public CurlCancelledException() {
+		super(CurlCode.CURLE_ABORTED_BY_CALLBACK);
+	}
+}
@@ -1,28 +1,49 @@
 package com.wealoha.libcurldroid;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.util.Log;
 
+import com.wealoha.libcurldroid.Curl.BufferWriteCallback;
+import com.wealoha.libcurldroid.Curl.HeaderCallback;
+import com.wealoha.libcurldroid.Curl.StreamReadCallback;
 import com.wealoha.libcurldroid.Curl.WriteCallback;
 import com.wealoha.libcurldroid.CurlOpt.OptFunctionPoint;
 import com.wealoha.libcurldroid.CurlOpt.OptLong;
 import com.wealoha.libcurldroid.CurlOpt.OptObjectPoint;
+import com.wealoha.libcurldroid.cache.CacheFile;
+import com.wealoha.libcurldroid.cache.DiskCache;
 import com.wealoha.libcurldroid.easy.MultiPart;
 import com.wealoha.libcurldroid.easy.NameValuePair;
 import com.wealoha.libcurldroid.util.CaseInsensitiveMap;
+import com.wealoha.libcurldroid.util.ChunkPipe;
+import com.wealoha.libcurldroid.util.ChunkedBuffer;
 import com.wealoha.libcurldroid.util.Logger;
 import com.wealoha.libcurldroid.util.StringUtils;
 
@@ -38,11 +59,37 @@ public class CurlHttp {
 	
 	private static final Logger logger = Logger.getLogger(CurlHttp.class);
 	
+	private static final int DEFAULT_WRITE_BUFFER_SIZE = 32 * 1024;
+	
+	// libcurl asks at most 16K (CURL_MAX_WRITE_SIZE) per read
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+	
+	private static final int DEFAULT_STREAM_BUFFER_SIZE = 64 * 1024;
+	
+	// transfers of performStreaming, blocked while body not read
+	private static final ExecutorService STREAM_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "curl-stream");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
 	private Curl curl;
+	private CurlPool pool;
+	private CurlShare share;
+	// scheme://host:port of url, set in prepare
+	private String origin;
+	private String caBundle;
 	private Map<String, String> headerMap;
 	private List<MultiPart> multiPartList;
 	private List<NameValuePair> simplePairList;
 	private byte[] body;
+	private ByteBuffer bodyBuffer;
+	private InputStream bodyStream;
+	private long bodyStreamLength;
 	private Boolean get;
 	private boolean followLocation = true;
 	private int maxRedirects = 3;
@@ -51,21 +98,74 @@ public class CurlHttp {
 	private int proxyPort;
 	private boolean asMultipart = false;
 	private String url;
+	private int writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+	private boolean accumulateBodyInNative = false;
+	private boolean decodeContentInNative = true;
+	private volatile boolean cancelled = false;
+	private File downloadFile;
+	private boolean downloadCrc32;
+	// resumable download into partial entry of resumeKey
+	private DiskCache resumeCache;
+	private String resumeKey;
+	// validators of the partial entry resumed
+	private Map<String, String> resumeMeta;
+	private long resumeOffset;
+	// partial entry of resumeKey locked by us
+	private boolean resumeLocked;
+	// segmented download, 0: single stream
+	private int maxSegments;
+	private long minSegmentSize;
+	// range of downloadFile written by a segment, -1: whole
+	private long rangeFrom = -1;
+	private long rangeTo = -1;
+	// HEAD
+	private boolean nobody = false;
+	// probe or segments running, cancelled with this
+	private volatile List<CurlHttp> segmentList;
+	// body of performStreaming
+	private volatile ChunkPipe bodyPipe;
+	// applied in one jni call before perform
+	private final CurlOptBatch opts = new CurlOptBatch();
 
 	
 	private CurlHttp() {
-		curl = new Curl();
 	}
 	
 	@Override
 	protected void finalize() throws Throwable {
-		curl.curlEasyCleanup();
+		// never performed
+		if (curl != null) {
+			curl.curlEasyCleanup();
+		}
 		super.finalize();
 	}
 	
+	/**
+	 * handle borrowed from {@link CurlPool#getDefault()}
+	 * 
+	 * @return
+	 * @throws CurlException
+	 */
 	public static CurlHttp newInstance() throws CurlException {
+		return newInstance(CurlPool.getDefault());
+	}
+	
+	/**
+	 * 
+	 * @param pool borrow handle from, given back after {@link #perform()}. null: a new handle, cleanup after perform
+	 * @return
+	 * @throws CurlException
+	 */
+	public static CurlHttp newInstance(CurlPool pool) throws CurlException {
 		CurlHttp curlEasy = new CurlHttp();
-		curlEasy.curl.curlEasyInit();
+		if (pool != null) {
+			curlEasy.curl = pool.borrow();
+			curlEasy.pool = pool;
+		} else {
+			curlEasy.curl = new Curl();
+			curlEasy.curl.curlEasyInit();
+		}
+		curlEasy.setShare(CurlShare.getDefault());
 		curlEasy.headerMap = new HashMap<String, String>();
 		// TODO get curl and cares version from jni
 		curlEasy.headerMap.put("User-Agent", "libcurldroid/0.1.0 libcurl/7.40.0 libcares/1.10.0"); 
@@ -84,30 +184,237 @@ public class CurlHttp {
 	}
 	
 	public CurlHttp setConnectionTimeoutMillis(long millis) {
-		curl.curlEasySetopt(OptLong.CURLOPT_CONNECTTIMEOUT_MS, millis);
+		opts.set(OptLong.CURLOPT_CONNECTTIMEOUT_MS, millis);
 		return this;
 	}
 	
 	public CurlHttp setTimeoutMillis(long millis) {
-		curl.curlEasySetopt(OptLong.CURLOPT_TIMEOUT_MS, millis);
+		opts.set(OptLong.CURLOPT_TIMEOUT_MS, millis);
 		return this;
 	}
 	
 	public CurlHttp setIpResolveV4() {
-		curl.curlEasySetopt(OptLong.CURLOPT_IPRESOLVE, CurlConstant.CURL_IPRESOLVE_V4);
+		opts.set(OptLong.CURLOPT_IPRESOLVE, CurlConstant.CURL_IPRESOLVE_V4);
 		return this;
 	}
 	
 	public CurlHttp setIpResolveV6() {
-		curl.curlEasySetopt(OptLong.CURLOPT_IPRESOLVE, CurlConstant.CURL_IPRESOLVE_V6);
+		opts.set(OptLong.CURLOPT_IPRESOLVE, CurlConstant.CURL_IPRESOLVE_V6);
 		return this;
 	}
 	
 	public CurlHttp setIpResolveWhatever() {
-		curl.curlEasySetopt(OptLong.CURLOPT_IPRESOLVE, CurlConstant.CURL_IPRESOLVE_WHATEVER);
+		opts.set(OptLong.CURLOPT_IPRESOLVE, CurlConstant.CURL_IPRESOLVE_WHATEVER);
+		return this;
+	}
+	
+	/**
+	 * CURLOPT_HTTP_VERSION
+	 */
+	public enum HttpVersion {
+		/** let libcurl decide */
+		DEFAULT(0), //
+		HTTP_1_0(1), //
+		HTTP_1_1(2), //
+		/** HTTP/2 if server supports it (ALPN for https), libcurl built with nghttp2 required */
+		HTTP_2_0(3), //
+		;
+		
+		private final int value;
+		
+		private HttpVersion(int value) {
+			this.value = value;
+		}
+		
+		public int getValue() {
+			return value;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param version with {@link CurlMulti#CurlMulti(boolean)} multiplexing, 
+	 * 		  HTTP/2 requests to the same origin share one connection.
+	 * 		  perform fails if not supported by libcurl, see {@link CurlMulti#isMultiplexSupported()}
+	 * @return
+	 */
+	public CurlHttp setHttpVersion(HttpVersion version) {
+		opts.set(OptLong.CURLOPT_HTTP_VERSION, version.getValue());
+		return this;
+	}
+	
+	/**
+	 * Body received is coalesced in a native buffer of this size before passed to java,
+	 * larger buffer means less jni calls.
+	 * 
+	 * @param size default 32K
+	 * @return
+	 */
+	public CurlHttp setWriteBufferSize(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("size must > 0");
+		}
+		this.writeBufferSize = size;
+		return this;
+	}
+	
+	/**
+	 * Accumulate whole body in native, copied to java once when done, instead of a java callback per chunk.
+	 * Fit for small responses (json etc.)
+	 * 
+	 * @param yes default false
+	 * @return
+	 */
+	public CurlHttp accumulateBodyInNative(boolean yes) {
+		this.accumulateBodyInNative = yes;
+		return this;
+	}
+	
+	/**
+	 * libcurl sends Accept-Encoding and inflates gzip/deflate body (zlib) while receiving,
+	 * {@link Result#getBody()} is the decoded body, Content-Encoding and Content-Length removed from result headers.<br/>
+	 * 
+	 * Value of the Accept-Encoding header added is used as encodings accepted, must be supported by libcurl
+	 * 
+	 * @param yes default true
+	 * @return
+	 */
+	public CurlHttp decodeContentInNative(boolean yes) {
+		this.decodeContentInNative = yes;
+		return this;
+	}
+	
+	/**
+	 * Write body to file in native, body never copied to java heap, 
+	 * {@link Result#getBody()} is empty, see {@link Result#getFile()}.<br/>
+	 * 
+	 * Body of error responses (4xx, 5xx) is written too, check status.
+	 * 
+	 * @param file truncated if exists
+	 * @param crc32 compute CRC32 while writing, see {@link Result#getFileCrc32()}
+	 * @return
+	 */
+	public CurlHttp downloadTo(File file, boolean crc32) {
+		this.downloadFile = file;
+		this.downloadCrc32 = crc32;
+		this.resumeCache = null;
+		return this;
+	}
+	
+	public CurlHttp downloadTo(File file) {
+		return downloadTo(file, false);
+	}
+	
+	/**
+	 * Download to file over parallel connections, each writes a byte range at its offset in native.<br/>
+	 * 
+	 * Probed by a HEAD request first, body split into at most maxSegments ranges not smaller than minSegmentSize,
+	 * fetched on {@link CurlMulti} (the one passed to {@link #perform(CurlMulti)}, {@link CurlMulti#getDefault()} otherwise).
+	 * Falls back to a single stream if the probe fails, server doesn't accept ranges (Accept-Ranges, Content-Length) or a range not served.<br/>
+	 * 
+	 * Only by {@link #perform()} / {@link #perform(CurlMulti)} of a get url, CRC32 not computed, content not decoded in native.
+	 * If segmented, status and headers of the {@link Result} are the probe's, {@link Result#getTransferStats()} too (segments not summed).
+	 * On a multiplexing {@link CurlMulti} (HTTP/2) ranges share one connection.
+	 * 
+	 * @param file
+	 * @param maxSegments
+	 * @param minSegmentSize bytes
+	 * @return
+	 */
+	public CurlHttp downloadSegmented(File file, int maxSegments, long minSegmentSize) {
+		if (minSegmentSize <= 0) {
+			throw new IllegalArgumentException("minSegmentSize must > 0");
+		}
+		downloadTo(file, false);
+		this.maxSegments = maxSegments;
+		this.minSegmentSize = minSegmentSize;
+		return this;
+	}
+	
+	/**
+	 * Download into an entry of {@link DiskCache} in native, resumed if interrupted.<br/>
+	 * 
+	 * Body written to the partial entry of key, a failed transfer keeps the bytes received and
+	 * validators (ETag/Last-Modified) there, the next download of key sends Range and If-Range and appends the missing tail only
+	 * (whole body rewritten if changed on server).<br/>
+	 * 
+	 * When done the partial entry becomes the entry of key, see {@link Result#getFile()}, status is 206 if resumed.
+	 * Content is not decoded in native (ranges are of the encoded body).
+	 * Concurrent downloads of the same key run one after another, perform waits for the previous one.
+	 * 
+	 * @param cache
+	 * @param key [a-zA-Z0-9_]+, md5 of url for example
+	 * @param crc32 compute CRC32 of the whole file, see {@link Result#getFileCrc32()}
+	 * @return
+	 */
+	public CurlHttp downloadResumable(DiskCache cache, String key, boolean crc32) {
+		this.resumeCache = cache;
+		this.resumeKey = key;
+		this.downloadCrc32 = crc32;
+		this.downloadFile = null;
+		return this;
+	}
+	
+	/**
+	 * share dns cache, ssl sessions, cookies with other handles
+	 * 
+	 * @param share default {@link CurlShare#getDefault()}, null: not shared
+	 * @return
+	 */
+	public CurlHttp setShare(CurlShare share) {
+		this.share = share;
+		return this;
+	}
+	
+	/**
+	 * CA certificates to verify peer, parsed once and shared by all requests (OpenSSL build),
+	 * otherwise passed as {@link OptObjectPoint#CURLOPT_CAINFO}
+	 * 
+	 * @param path PEM file
+	 * @return
+	 */
+	public CurlHttp setCaBundle(String path) {
+		this.caBundle = path;
 		return this;
 	}
 	
+	/**
+	 * Connect (and TLS handshake) to the origin of url ahead by a HEAD request to url (redirects not followed).
+	 * Connection kept alive by a handle in {@link CurlPool#getDefault()}, reused by next request to the origin,
+	 * {@link TransferStats#isConnectionReused()} of it is true.<br/>
+	 * 
+	 * (a CURLOPT_CONNECT_ONLY connection is never reused by libcurl for another transfer)<br/>
+	 * 
+	 * Blocks until the response, call from a background thread.
+	 * 
+	 * @param url
+	 * @return result of the HEAD request
+	 * @throws CurlException connect fail
+	 */
+	public static Result preconnect(String url) throws CurlException {
+		return newPreconnect(url).perform();
+	}
+	
+	/**
+	 * Same as {@link #preconnect(String)}, connection kept in the connection cache of multi,
+	 * reused by requests performed on it
+	 * 
+	 * @param url
+	 * @param multi
+	 * @return
+	 * @throws CurlException
+	 */
+	public static Future<Result> preconnectAsync(String url, CurlMulti multi) throws CurlException {
+		return newPreconnect(url).performAsync(multi, null);
+	}
+	
+	private static CurlHttp newPreconnect(String url) throws CurlException {
+		CurlHttp curlHttp = CurlHttp.newInstance();
+		curlHttp.nobody = true;
+		curlHttp.followLocation = false;
+		return curlHttp.getUrl(url);
+	}
+	
 	/**
 	 * 
 	 * @param proxy [scheme]://
@@ -115,7 +422,7 @@ public class CurlHttp {
 	 * @see http://curl.haxx.se/libcurl/c/CURLOPT_PROXY.html
 	 */
 	public CurlHttp setProxy(String proxy) {
-		curl.curlEasySetopt(OptObjectPoint.CURLOPT_PROXY, proxy);
+		opts.set(OptObjectPoint.CURLOPT_PROXY, proxy);
 		return this;
 	}
 	
@@ -249,6 +556,56 @@ public class CurlHttp {
 		return this;
 	}
 	
+	/**
+	 * add multipart form field read from file while sending(post only)
+	 * 
+	 * @param name required
+	 * @param filename if null, name of the file will be used
+	 * @param contentType if null, curl will detect from filename
+	 * @param file required
+	 * @return
+	 */
+	public CurlHttp addMultiPartPostParam(String name, String filename, String contentType, File file) {
+		if (StringUtils.isBlank(name)) {
+			throw new IllegalArgumentException("name is required");
+		}
+		if (file == null || !file.isFile()) {
+			throw new IllegalArgumentException("file is required");
+		}
+		if (multiPartList == null) {
+			multiPartList = new ArrayList<MultiPart>();
+		}
+		multiPartList.add(new MultiPart(name, filename, contentType, file));
+		return this;
+	}
+	
+	/**
+	 * add multipart form field read from stream while sending(post only)
+	 * 
+	 * @param name required
+	 * @param filename if null, "file.dat" will be used
+	 * @param contentType if null, curl will detect from filename
+	 * @param is required, not closed after perform
+	 * @param length required, size of the part must be known
+	 * @return
+	 */
+	public CurlHttp addMultiPartPostParam(String name, String filename, String contentType, InputStream is, long length) {
+		if (StringUtils.isBlank(name)) {
+			throw new IllegalArgumentException("name is required");
+		}
+		if (is == null) {
+			throw new IllegalArgumentException("stream is required");
+		}
+		if (length < 0) {
+			throw new IllegalArgumentException("length is required");
+		}
+		if (multiPartList == null) {
+			multiPartList = new ArrayList<MultiPart>();
+		}
+		multiPartList.add(new MultiPart(name, filename, contentType, is, length));
+		return this;
+	}
+	
 	/**
 	 * set raw body to post(override {@link #addParam(String, List)} {@link #addParam(String, String)} and {@link #addMultiPartPostParam(String, String, String, byte[])})
 	 * 
@@ -259,120 +616,437 @@ public class CurlHttp {
 	public CurlHttp setBody(String mimeType, byte[] data) {
 		addHeader("Content-Type", mimeType);
 		this.body = data;
+		this.bodyBuffer = null;
+		this.bodyStream = null;
+		return this;
+	}
+	
+	/**
+	 * same as {@link #setBody(String, byte[])}, a direct buffer is sent from its memory without copy
+	 * 
+	 * @param mimeType
+	 * @param data bytes from position to limit, don't modify before perform returns. heap buffer is copied
+	 * @return
+	 */
+	public CurlHttp setBody(String mimeType, ByteBuffer data) {
+		if (!data.isDirect()) {
+			byte[] bytes = new byte[data.remaining()];
+			data.duplicate().get(bytes);
+			return setBody(mimeType, bytes);
+		}
+		addHeader("Content-Type", mimeType);
+		this.body = null;
+		this.bodyBuffer = data;
+		this.bodyStream = null;
 		return this;
 	}
 	
-	private final Pattern STATUS_PATTERN = Pattern.compile("HTTP/\\d+\\.\\d+\\s+(\\d+)\\s+");
+	/**
+	 * post raw body read from stream while sending, same as {@link #setBody(String, byte[])} but constant memory.
+	 * The stream is read once, a request needing the body again (307/308 redirect, auth) fails with {@link CurlCode#CURLE_SEND_FAIL_REWIND}
+	 * 
+	 * @param mimeType
+	 * @param is not closed after perform
+	 * @param length -1 if unknown, sent as Transfer-Encoding: chunked
+	 * @return
+	 */
+	public CurlHttp setBody(String mimeType, InputStream is, long length) {
+		addHeader("Content-Type", mimeType);
+		this.body = null;
+		this.bodyBuffer = null;
+		this.bodyStream = is;
+		this.bodyStreamLength = length;
+		return this;
+	}
 	
-	private void setHeaderCallback(final Map<String, String> resultMap, final AtomicInteger status, final StringBuffer statusLine) {
-		curl.curlEasySetopt(OptFunctionPoint.CURLOPT_HEADERFUNCTION, new WriteCallback() {
+	private void setBodyStream(final InputStream is) {
+		CurlCode code = curl.curlEasySetoptRead(OptFunctionPoint.CURLOPT_READFUNCTION, new StreamReadCallback() {
+			
+			@Override
+			public int writeData(byte[] buffer, int length) {
+				try {
+					int read = is.read(buffer, 0, length);
+					// end of stream
+					return read < 0 ? 0 : read;
+				} catch (IOException e) {
+					Log.w(TAG, "read body fail", e);
+					return -1;
+				}
+			}
+		}, READ_BUFFER_SIZE);
+		if (code != CurlCode.CURLE_OK) {
+			throw new RuntimeException("set read callback fail: " + code);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param resultMap
+	 * @param status
+	 * @param statusLine
+	 * @param sizedBody pre-sized by Content-Length (if not decoded), may be null
+	 */
+	private void setHeaderCallback(final Map<String, String> resultMap, final AtomicInteger status, final StringBuffer statusLine, final ChunkedBuffer sizedBody) {
+		CurlCode code = curl.curlEasySetopt(OptFunctionPoint.CURLOPT_HEADERFUNCTION, new HeaderCallback() {
+			
+			@Override
+			public void onHeaders(int code, String line, String[] names, String[] values) {
+				Log.i(TAG, "header: " + line);
+				// headers of the last response (after redirects)
+				resultMap.clear();
+				for (int i = 0; i < names.length; i++) {
+					resultMap.put(names[i], values[i]);
+				}
+				status.set(code);
+				statusLine.setLength(0);
+				statusLine.append(line);
+				
+				String contentLength = resultMap.get("Content-Length");
+				if (sizedBody != null && contentLength != null
+						&& !(decodeContentInNative && resultMap.get("Content-Encoding") != null)) {
+					try {
+						sizedBody.expect(Long.parseLong(contentLength.trim()));
+					} catch (NumberFormatException e) {
+						logger.w("invalid Content-Length: %s", contentLength, e);
+					}
+				}
+			}
+		});
+		if (code != CurlCode.CURLE_OK) {
+			throw new RuntimeException("set header callback fail: " + code);
+		}
+	}
+	
+	private void setStreamingBodyCallback(final Response response) {
+		CurlCode code = curl.curlEasySetopt(OptFunctionPoint.CURLOPT_WRITEFUNCTION, new WriteCallback() {
 			
 			@Override
 			public int readData(byte[] data) {
-				if (data == null) {
-					return 0;
+				if (!response.bodyReceived) {
+					response.bodyReceived = true;
+					startStreamingBody(response);
 				}
-				String header = new String(data);
-				if (!StringUtils.isBlank(header)) {
-					String[] nameAndValue = StringUtils.split(header, ":", 2);
-					if (nameAndValue.length == 2) {
-						resultMap.put(nameAndValue[0].trim(), nameAndValue[1].trim());
-					} else if (nameAndValue.length == 1) {
-						Log.i(TAG, "header: " + nameAndValue[0]);
-						Matcher m = STATUS_PATTERN.matcher(nameAndValue[0]);
-						if (m.find()) {
-							int code = Integer.valueOf(m.group(1));
-							if (code != 100) {
-								// HTTP/1.1 100 Continue
-								status.set(code);
-								statusLine.append(nameAndValue[0]);
-							}
-						}
+				try {
+					if (!bodyPipe.write(data)) {
+						// body closed
+						return 0;
 					}
+				} catch (InterruptedIOException e) {
+					return 0;
 				}
 				return data.length;
 			}
 		});
+		if (code != CurlCode.CURLE_OK) {
+			throw new RuntimeException("set write callback fail: " + code);
+		}
+	}
+	
+	/**
+	 * headers copied on the transfer thread (still writing the map), then the caller of performStreaming waked up
+	 * 
+	 * @param response
+	 */
+	@SuppressWarnings("unchecked")
+	private void startStreamingBody(Response response) {
+		Map<String, String> headers = new CaseInsensitiveMap<String, String>();
+		headers.putAll(response.resultHeaderMap);
+		removeEncodingHeaders(headers);
+		response.streamingHeaderMap = headers;
+		response.bodyStarted.countDown();
 	}
 	
 	private void setBodyCallback(final OutputStream os) {
-		curl.curlEasySetopt(OptFunctionPoint.CURLOPT_WRITEFUNCTION, new WriteCallback() {
+		CurlCode code = curl.curlEasySetopt(OptFunctionPoint.CURLOPT_WRITEFUNCTION, new BufferWriteCallback() {
+			
+			// copy out of the direct buffer, reused by all chunks
+			private byte[] scratch;
 			
 			@Override
-			public int readData(byte[] data) {
-				if (data != null && data.length == 0) {
+			public int readData(ByteBuffer buffer, int length) {
+				if (length == 0) {
 					return 0;
 				}
+				if (scratch == null || scratch.length < length) {
+					scratch = new byte[length];
+				}
+				buffer.clear();
+				buffer.get(scratch, 0, length);
 				try {
-					os.write(data);
+					os.write(scratch, 0, length);
 				} catch (IOException e) {
 					Log.w(TAG, "write fail", e);
 					return 0;
 				}
-				return data.length;
+				return length;
 			}
-		});
+		}, writeBufferSize);
+		if (code != CurlCode.CURLE_OK) {
+			throw new RuntimeException("set write callback fail: " + code);
+		}
 	}
 	
 	public Result perform() throws CurlException {
-		if (url == null) {
-			throw new IllegalStateException("url getUrl/postUrl not set");
+		if (isSegmented()) {
+			return performSegmented(null);
 		}
+		Response response = prepare();
 		
-		// - populate headers
-		setRequestHeaders();
+		// - do request
+		try {
+			CurlCode code = curl.curlEasyPerform();
+			return toResult(response, code);
+		} finally {
+			releaseCurl();
+		}
+	}
+	
+	/**
+	 * Returns as soon as status and headers are parsed (first byte of body received, or transfer done),
+	 * body read from {@link StreamingResult#getBody()} while receiving.<br/>
+	 * 
+	 * Performed on a thread of its own, receiving waits while 64K received not read, see {@link #performStreaming(int)}.
+	 * Download modes (file, native accumulate) are ignored.
+	 * 
+	 * @return
+	 * @throws CurlException transfer fail before body
+	 */
+	public StreamingResult performStreaming() throws CurlException {
+		return performStreaming(DEFAULT_STREAM_BUFFER_SIZE);
+	}
+	
+	/**
+	 * 
+	 * @param bufferSize bytes received but not read, receiving waits when exceeded
+	 * @return
+	 * @throws CurlException transfer fail before body
+	 * @see #performStreaming()
+	 */
+	public StreamingResult performStreaming(int bufferSize) throws CurlException {
+		downloadFile = null;
+		resumeCache = null;
+		maxSegments = 0;
+		accumulateBodyInNative = false;
+		final ChunkPipe pipe = new ChunkPipe(bufferSize);
+		bodyPipe = pipe;
+		final Response response = prepare();
 		
-		// - populate params
-		// - set post data (if needed)
-		@SuppressWarnings("unchecked")
-		Map<String, String> resultHeaderMap = new CaseInsensitiveMap<String, String>();
-		ByteArrayOutputStream bodyOs = new ByteArrayOutputStream();
-
-		AtomicInteger status = new AtomicInteger();
-		StringBuffer statusLine = new StringBuffer();
-		setHeaderCallback(resultHeaderMap, status, statusLine);
-		setBodyCallback(bodyOs);
+		final AtomicReference<CurlException> failure = new AtomicReference<CurlException>();
+		try {
+			STREAM_EXECUTOR.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						CurlCode code = curl.curlEasyPerform();
+						toResult(response, code);
+						pipe.close();
+					} catch (CurlException e) {
+						failure.set(e);
+						IOException ioe = new IOException("transfer fail: " + e.getMessage());
+						ioe.initCause(e);
+						pipe.fail(ioe);
+					} finally {
+						releaseCurl();
+						if (response.bodyStarted.getCount() > 0) {
+							startStreamingBody(response);
+						}
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			releaseCurl();
+			throw e;
+		}
 		
-		if (isPost()) {
-			// body populate from params
-			setPostParams();
-		} else {
-			String params = getEncodedBodyParams();
-			if (!StringUtils.isBlank(params)) {
-				if (url.contains("?")) {
-					if (url.endsWith("&")) {
-						url += params;
+		try {
+			response.bodyStarted.await();
+		} catch (InterruptedException e) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new CurlCancelledException();
+		}
+		// set before failure if body started
+		CurlException e = failure.get();
+		if (e != null && !response.bodyReceived) {
+			throw e;
+		}
+		return new StreamingResult(response.status.get(), response.statusLine.toString(), response.streamingHeaderMap, pipe.getInputStream(), this);
+	}
+	
+	/**
+	 * Perform on {@link CurlMulti}'s loop thread, current thread blocked until done
+	 * 
+	 * @param multi null: same as {@link #perform()}
+	 * @return
+	 * @throws CurlException
+	 */
+	public Result perform(CurlMulti multi) throws CurlException {
+		if (multi == null) {
+			return perform();
+		}
+		if (isSegmented()) {
+			return performSegmented(multi);
+		}
+		
+		Future<Result> future = performAsync(multi, null);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new CurlCancelledException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CurlException) {
+				throw (CurlException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Perform on {@link CurlMulti}'s loop thread
+	 * 
+	 * @param multi
+	 * @param callback called on loop thread when done, may be null
+	 * @return
+	 * @throws CurlException
+	 */
+	public Future<Result> performAsync(CurlMulti multi, final ResultCallback callback) throws CurlException {
+		if (multi == null) {
+			throw new IllegalArgumentException("multi is required");
+		}
+		final Response response = prepare();
+		final ResultFuture future = new ResultFuture(this);
+		
+		try {
+			multi.add(curl, new CurlMulti.Callback() {
+				
+				@Override
+				public void onDone(Curl c, CurlCode code) {
+					Result result = null;
+					CurlException exception = null;
+					try {
+						result = toResult(response, code);
+					} catch (CurlException e) {
+						exception = e;
+					} finally {
+						releaseCurl();
+					}
+					
+					if (exception == null) {
+						future.setResult(result);
+						if (callback != null) {
+							callback.onSuccess(result);
+						}
 					} else {
-						url += "&" + params;
+						future.setException(exception);
+						if (callback != null) {
+							callback.onFail(exception);
+						}
 					}
-				} else {
-					url += "?" + params;
 				}
+			});
+		} catch (RuntimeException e) {
+			releaseCurl();
+			throw e;
+		}
+		return future;
+	}
+	
+	public interface ResultCallback {
+		
+		public void onSuccess(Result result);
+		
+		public void onFail(CurlException e);
+	}
+	
+	/**
+	 * Abort the transfer, {@link #perform()} throws {@link CurlCancelledException}.<br/>
+	 * 
+	 * Safe to call from any thread, before or while performing.
+	 */
+	public void cancel() {
+		cancelled = true;
+		synchronized (this) {
+			if (curl != null) {
+				curl.cancel();
+			}
+		}
+		List<CurlHttp> segments = segmentList;
+		if (segments != null) {
+			for (CurlHttp segment : segments) {
+				segment.cancel();
+			}
+		}
+		ChunkPipe pipe = bodyPipe;
+		if (pipe != null) {
+			// wake up receiving blocked on pipe
+			pipe.abort();
+		}
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	private static class ResultFuture extends FutureTask<Result> {
+		
+		private final CurlHttp curlHttp;
+		
+		public ResultFuture(CurlHttp curlHttp) {
+			super(new Callable<Result>() {
 				
-				logger.v("contact params to url: %s", url);
+				@Override
+				public Result call() throws Exception {
+					throw new IllegalStateException("completed by multi");
+				}
+			});
+			this.curlHttp = curlHttp;
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean result = super.cancel(mayInterruptIfRunning);
+			if (result) {
+				curlHttp.cancel();
 			}
+			return result;
 		}
 		
-		if (get) {
-			curl.curlEasySetopt(OptLong.CURLOPT_HTTPGET, 1);
-		} else {
-			curl.curlEasySetopt(OptLong.CURLOPT_POST, 1);
+		public void setResult(Result result) {
+			set(result);
 		}
-		curl.curlEasySetopt(OptObjectPoint.CURLOPT_URL, url);
 		
-		// follow
-		curl.curlEasySetopt(OptLong.CURLOPT_FOLLOWLOCATION, followLocation ? 1 : 0);
-		if (followLocation) {
-			Log.d(TAG, "set FOLLOWLOCATION: " + maxRedirects);
-			curl.curlEasySetopt(OptLong.CURLOPT_MAXREDIRS, maxRedirects);
+		@Override
+		public void setException(Throwable t) {
+			super.setException(t);
 		}
+	}
+	
+	/**
+	 * response of one transfer
+	 */
+	private static class Response {
 		
-		// proxy
-		setProxy();
+		@SuppressWarnings("unchecked")
+		private final Map<String, String> resultHeaderMap = new CaseInsensitiveMap<String, String>();
+		// pre-sized by Content-Length
+		private final ChunkedBuffer bodyOs = new ChunkedBuffer();
+		private final AtomicInteger status = new AtomicInteger();
+		private final StringBuffer statusLine = new StringBuffer();
+		// taken from native buffer, bodyOs not used
+		private byte[] body;
+		private TransferStats transferStats;
+		private File file;
+		private long fileCrc32 = -1;
+		// performStreaming, headers ready when counted down
+		private final CountDownLatch bodyStarted = new CountDownLatch(1);
+		// performStreaming, copy of resultHeaderMap taken when body started
+		private volatile Map<String, String> streamingHeaderMap;
+		private volatile boolean bodyReceived;
 		
-		// - do request
-		try {
-			CurlCode code = curl.curlEasyPerform();
+		public Result toResult(CurlCode code) throws CurlException {
 			if (code != CurlCode.CURLE_OK) {
 				throw new CurlException(code);
 			}
@@ -384,24 +1058,542 @@ public class CurlHttp {
 			// - read response
 		
 			// parse result code from headers
-			return new Result(status.get(), statusLine.toString(), resultHeaderMap, bodyOs.toByteArray());
+			return new Result(status.get(), statusLine.toString(), resultHeaderMap, body != null ? ChunkedBuffer.wrap(body) : bodyOs, transferStats, file, fileCrc32);
+		}
+	}
+	
+	private Result toResult(Response response, CurlCode code) throws CurlException {
+		if (resumeCache != null) {
+			finishResume(response, code);
+		}
+		if (code == CurlCode.CURLE_ABORTED_BY_CALLBACK && cancelled) {
+			throw new CurlCancelledException();
+		}
+		if (code == CurlCode.CURLE_OK) {
+			if (downloadFile != null) {
+				response.file = downloadFile;
+				response.fileCrc32 = curl.getWriteFileCrc32();
+				logger.d("downloaded to: %s (%d)", downloadFile, curl.getWriteFileLength());
+			} else if (resumeCache != null) {
+				logger.d("downloaded to: %s (%d)", response.file, curl.getWriteFileLength());
+			} else if (accumulateBodyInNative) {
+				response.body = curl.takeAccumulatedBody();
+			}
+			response.transferStats = curl.getTransferStats();
+			removeEncodingHeaders(response.resultHeaderMap);
+		}
+		return response.toResult(code);
+	}
+	
+	private void removeEncodingHeaders(Map<String, String> headers) {
+		if (decodeContentInNative && headers.get("Content-Encoding") != null) {
+			// body inflated by libcurl, these describe the encoded one
+			headers.remove("Content-Encoding");
+			headers.remove("Content-Length");
+		}
+	}
+	
+	private boolean isSegmented() {
+		return maxSegments > 1 && downloadFile != null && get != null && get;
+	}
+	
+	/**
+	 * probe, then download ranges in parallel or fall back to single stream
+	 * 
+	 * @param multi
+	 * @return
+	 * @throws CurlException
+	 */
+	private Result performSegmented(CurlMulti multi) throws CurlException {
+		Result result;
+		try {
+			result = probeAndPerformSegments(multi);
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
+		if (result == null) {
+			maxSegments = 0;
+			return perform(multi);
+		}
+		// never performed
+		release();
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param multi
+	 * @return null if not segmented
+	 * @throws CurlException
+	 */
+	private Result probeAndPerformSegments(CurlMulti multi) throws CurlException {
+		CurlHttp probe = copy();
+		probe.nobody = true;
+		segmentList = Collections.singletonList(probe);
+		Result head;
+		try {
+			head = probe.perform(multi);
+		} catch (CurlCancelledException e) {
+			throw e;
+		} catch (CurlException e) {
+			if (cancelled) {
+				throw e;
+			}
+			logger.w("probe fail, not segmented: %s", url, e);
+			return null;
 		} finally {
+			segmentList = null;
+		}
+		long length = -1;
+		String contentLength = head.getHeader("Content-Length");
+		if (contentLength != null) {
+			try {
+				length = Long.parseLong(contentLength.trim());
+			} catch (NumberFormatException e) {
+				logger.w("invalid Content-Length: %s", contentLength, e);
+			}
+		}
+		String acceptRanges = head.getHeader("Accept-Ranges");
+		int count = length > 0 ? (int) Math.min(maxSegments, length / minSegmentSize) : 0;
+		if (head.getStatus() != 200 || !"bytes".equalsIgnoreCase(acceptRanges) || count < 2) {
+			logger.d("not segmented: status=%d, length=%d, Accept-Ranges: %s", head.getStatus(), length, acceptRanges);
+			return null;
+		}
+		return performSegments(multi != null ? multi : CurlMulti.getDefault(), head, length, count);
+	}
+	
+	/**
+	 * 
+	 * @param multi
+	 * @param head
+	 * @param length
+	 * @param count
+	 * @return null if a range not served
+	 * @throws CurlException
+	 */
+	private Result performSegments(CurlMulti multi, Result head, long length, int count) throws CurlException {
+		// segments written at their offsets
+		try {
+			RandomAccessFile file = new RandomAccessFile(downloadFile, "rw");
+			try {
+				file.setLength(length);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			logger.w("create file fail: %s", downloadFile, e);
+			throw new CurlException(CurlCode.CURLE_WRITE_ERROR);
+		}
+		// changed on server: 200 instead of 206, not served
+		String validator = head.getHeader("ETag");
+		if (validator == null) {
+			validator = head.getHeader("Last-Modified");
+		}
+		
+		long segmentSize = (length + count - 1) / count;
+		List<CurlHttp> segments = new ArrayList<CurlHttp>(count);
+		for (int i = 0; i < count; i++) {
+			CurlHttp segment = copy();
+			segment.downloadFile = downloadFile;
+			segment.rangeFrom = i * segmentSize;
+			segment.rangeTo = Math.min(length, segment.rangeFrom + segmentSize) - 1;
+			if (validator != null) {
+				segment.headerMap.put("If-Range", validator);
+			}
+			segments.add(segment);
+		}
+		logger.d("segmented: %s length=%d, segments=%d", url, length, count);
+		
+		segmentList = segments;
+		List<Future<Result>> futures = new ArrayList<Future<Result>>(count);
+		try {
+			if (cancelled) {
+				throw new CurlCancelledException();
+			}
+			for (CurlHttp segment : segments) {
+				futures.add(segment.performAsync(multi, null));
+			}
+		} catch (RuntimeException e) {
+			for (CurlHttp segment : segments) {
+				segment.cancel();
+				segment.release();
+			}
+			segmentList = null;
+			throw e;
+		}
+		
+		boolean served = true;
+		CurlException failure = null;
+		try {
+			for (int i = 0; i < count; i++) {
+				CurlHttp segment = segments.get(i);
+				try {
+					Result result = futures.get(i).get();
+					String contentRange = result.getHeader("Content-Range");
+					if (contentRange == null || !contentRange.trim().startsWith("bytes " + segment.rangeFrom + "-" + segment.rangeTo + "/")) {
+						logger.w("range not served: %d-%d, Content-Range: %s", segment.rangeFrom, segment.rangeTo, contentRange);
+						served = false;
+					}
+				} catch (ExecutionException e) {
+					if (failure != null || !served) {
+						// cancelled by us
+						continue;
+					}
+					CurlException ce = e.getCause() instanceof CurlException ? (CurlException) e.getCause() : new CurlException(e.getCause().getMessage());
+					if (ce.getCurlCode() == CurlCode.CURLE_WRITE_ERROR) {
+						// not 206
+						served = false;
+					} else {
+						failure = ce;
+					}
+					for (CurlHttp other : segments) {
+						other.cancel();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new CurlCancelledException();
+		} finally {
+			segmentList = null;
+		}
+		
+		if (failure != null) {
+			throw failure;
+		}
+		if (!served) {
+			return null;
+		}
+		return new Result(head.getStatus(), head.getStatusLine(), head.getHeaders(), new byte[0], head.getTransferStats(), downloadFile, -1);
+	}
+	
+	/**
+	 * a new one of the same request (url, params, headers, options), to be performed on another handle
+	 * 
+	 * @return
+	 * @throws CurlException
+	 */
+	private CurlHttp copy() throws CurlException {
+		CurlHttp copy = newInstance(pool);
+		copy.share = share;
+		copy.caBundle = caBundle;
+		copy.headerMap.putAll(headerMap);
+		copy.simplePairList = simplePairList;
+		copy.get = get;
+		copy.url = url;
+		copy.followLocation = followLocation;
+		copy.maxRedirects = maxRedirects;
+		copy.useSystemProxy = useSystemProxy;
+		copy.proxyHost = proxyHost;
+		copy.proxyPort = proxyPort;
+		// ranges of the encoded body
+		copy.decodeContentInNative = false;
+		copy.opts.addAll(opts);
+		return copy;
+	}
+	
+	/**
+	 * one download writes the partial entry at a time, unlocked when handle released
+	 */
+	private void lockResume() {
+		try {
+			resumeCache.lockPartial(resumeKey);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CurlCancelledException();
+		}
+		resumeLocked = true;
+	}
+	
+	/**
+	 * Range of the partial entry, set before request headers
+	 * 
+	 * @return offset resumed at, 0 if not resumable
+	 */
+	private long prepareResume() {
+		// ranges of decoded body unknown
+		decodeContentInNative = false;
+		resumeMeta = null;
+		CacheFile partial;
+		try {
+			partial = resumeCache.getPartial(resumeKey);
+		} catch (IOException e) {
+			logger.w("read partial fail: %s", resumeKey, e);
+			return 0;
+		}
+		if (partial == null || partial.getFileSize() == 0) {
+			return 0;
+		}
+		Map<String, String> meta = partial.getMeta();
+		String validator = meta.get("ETag");
+		if (validator == null) {
+			validator = meta.get("Last-Modified");
+		}
+		if (validator == null) {
+			return 0;
+		}
+		resumeMeta = meta;
+		logger.d("resume %s at %d, If-Range: %s", resumeKey, partial.getFileSize(), validator);
+		headerMap.put("If-Range", validator);
+		opts.set(OptObjectPoint.CURLOPT_RANGE, partial.getFileSize() + "-");
+		return partial.getFileSize();
+	}
+	
+	/**
+	 * commit the partial entry if done, keep it with validators if interrupted
+	 * 
+	 * @param response
+	 * @param code
+	 * @throws CurlException {@link CurlCode#CURLE_RANGE_ERROR} 206 not of the range requested, partial entry discarded
+	 */
+	private void finishResume(Response response, CurlCode code) throws CurlException {
+		int status = response.status.get();
+		try {
+			if (status == 416) {
+				// partial broken or resource shrunk
+				resumeCache.removePartial(resumeKey);
+				return;
+			}
+			if (status != 200 && status != 206) {
+				// no body written, partial kept
+				return;
+			}
+			if (status == 206) {
+				String contentRange = response.resultHeaderMap.get("Content-Range");
+				if (contentRange == null || !contentRange.trim().startsWith("bytes " + resumeOffset + "-")) {
+					// appended at the wrong offset
+					logger.w("range not served: %d-, Content-Range: %s", resumeOffset, contentRange);
+					resumeCache.removePartial(resumeKey);
+					throw new CurlException(CurlCode.CURLE_RANGE_ERROR);
+				}
+			}
+			Map<String, String> meta = new HashMap<String, String>();
+			for (String name : new String[] { "ETag", "Last-Modified" }) {
+				String value = response.resultHeaderMap.get(name);
+				if (value != null) {
+					meta.put(name, value);
+				}
+			}
+			if (meta.isEmpty() && status == 206 && resumeMeta != null) {
+				meta.putAll(resumeMeta);
+			}
+			if (code == CurlCode.CURLE_OK) {
+				CacheFile cacheFile = resumeCache.commitPartial(resumeKey, meta);
+				response.file = resumeCache.getFile(cacheFile);
+				response.fileCrc32 = curl.getWriteFileCrc32();
+			} else if (meta.isEmpty()) {
+				// can't be validated
+				resumeCache.removePartial(resumeKey);
+			} else {
+				// a partial rewritten from start is of these validators too
+				resumeCache.setPartial(resumeKey, meta);
+				logger.d("partial kept: %s (%d)", resumeKey, curl.getWriteFileLength());
+			}
+		} catch (IOException e) {
+			logger.w("save partial fail: %s", resumeKey, e);
+		}
+	}
+	
+	/**
+	 * set all options, ready to perform
+	 * 
+	 * @return
+	 */
+	private Response prepare() {
+		if (url == null) {
+			throw new IllegalStateException("url getUrl/postUrl not set");
+		}
+		if (curl == null) {
+			throw new IllegalStateException("already performed");
+		}
+		
+		try {
+			if (cancelled) {
+				throw new CurlCancelledException();
+			}
+			URL parsed = parseUrl();
+			if (parsed != null && pool != null) {
+				// handle holds connection to the origin
+				origin = parsed.getProtocol() + "://" + parsed.getHost().toLowerCase() + ":" + getPort(parsed);
+				synchronized (this) {
+					curl = pool.exchange(curl, origin);
+				}
+			}
+			curl.setCancellable();
+			applyShare();
+			if (TlsSessionStore.getInstalled() != null && TlsSessionStore.isSupported()) {
+				CurlCode code = curl.setTlsSessionPersistent();
+				if (code != CurlCode.CURLE_OK) {
+					logger.v("tls session not persistent: %s", code);
+				}
+			}
+			if (caBundle != null) {
+				setCaBundle();
+			}
+			
+			resumeOffset = 0;
+			if (resumeCache != null) {
+				lockResume();
+				resumeOffset = prepareResume();
+			}
+			
+			// - populate headers
+			setRequestHeaders();
+			
+			// - populate params
+			// - set post data (if needed)
+			Response response = new Response();
+			ChunkedBuffer sizedBody = null;
+			if (bodyPipe != null) {
+				setStreamingBodyCallback(response);
+			} else if (downloadFile != null && rangeFrom >= 0) {
+				opts.set(OptObjectPoint.CURLOPT_RANGE, rangeFrom + "-" + rangeTo);
+				CurlCode code = curl.setWriteFileRange(downloadFile.getAbsolutePath(), rangeFrom);
+				if (code != CurlCode.CURLE_OK) {
+					throw new CurlException(code);
+				}
+			} else if (downloadFile != null) {
+				CurlCode code = curl.setWriteFile(downloadFile.getAbsolutePath(), downloadCrc32);
+				if (code != CurlCode.CURLE_OK) {
+					throw new CurlException(code);
+				}
+			} else if (resumeCache != null) {
+				File partialFile = resumeCache.getPartialFile(resumeKey);
+				CurlCode code = curl.setWriteFile(partialFile.getAbsolutePath(), resumeOffset, downloadCrc32);
+				if (code != CurlCode.CURLE_OK) {
+					throw new CurlException(code);
+				}
+			} else if (accumulateBodyInNative) {
+				curl.setAccumulateBody();
+			} else {
+				setBodyCallback(response.bodyOs);
+				if (!nobody) {
+					sizedBody = response.bodyOs;
+				}
+			}
+			setHeaderCallback(response.resultHeaderMap, response.status, response.statusLine, sizedBody);
+			
+			if (isPost()) {
+				// body populate from params
+				setPostParams();
+			} else {
+				String params = getEncodedBodyParams();
+				if (!StringUtils.isBlank(params)) {
+					if (url.contains("?")) {
+						if (url.endsWith("&")) {
+							url += params;
+						} else {
+							url += "&" + params;
+						}
+					} else {
+						url += "?" + params;
+					}
+					
+					logger.v("contact params to url: %s", url);
+				}
+			}
+			
+			if (get && nobody) {
+				opts.set(OptLong.CURLOPT_NOBODY, 1);
+			} else if (get) {
+				opts.set(OptLong.CURLOPT_HTTPGET, 1);
+			} else {
+				opts.set(OptLong.CURLOPT_POST, 1);
+			}
+			opts.set(OptObjectPoint.CURLOPT_URL, url);
+			
+			// follow
+			opts.set(OptLong.CURLOPT_FOLLOWLOCATION, followLocation ? 1 : 0);
+			if (followLocation) {
+				Log.d(TAG, "set FOLLOWLOCATION: " + maxRedirects);
+				opts.set(OptLong.CURLOPT_MAXREDIRS, maxRedirects);
+			}
+			
+			// dns prefetched
+			if (parsed != null) {
+				setResolve(parsed);
+			}
+			
+			// proxy
+			setProxy();
+			
+			CurlCode code = curl.curlEasySetopt(opts);
+			if (code != CurlCode.CURLE_OK) {
+				// option failed logged by Curl
+				throw new CurlException(code);
+			}
+			
+			return response;
+		} catch (RuntimeException e) {
+			releaseCurl();
+			throw e;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return url set by getUrl/postUrl, params not appended
+	 */
+	String getRequestUrl() {
+		return url;
+	}
+	
+	/**
+	 * give back or cleanup handle if not performed
+	 */
+	synchronized void release() {
+		if (curl != null) {
+			releaseCurl();
+		}
+	}
+	
+	private synchronized void releaseCurl() {
+		if (resumeLocked) {
+			resumeCache.unlockPartial(resumeKey);
+			resumeLocked = false;
+		}
+		if (pool != null) {
+			pool.giveBack(curl, origin);
+		} else {
 			curl.curlEasyCleanup();
 		}
+		curl = null;
 	}
 
 	private void setRequestHeaders() {
 		List<String> headers = new ArrayList<String>(headerMap.size());
+		// "": all encodings supported by libcurl
+		String acceptEncoding = "";
 		for (Entry<String, String> entry : headerMap.entrySet()) {
 			String value = entry.getValue();
 			if (value == null) {
 				value = "";
 			}
+			if (decodeContentInNative && "Accept-Encoding".equalsIgnoreCase(entry.getKey())) {
+				// sent by libcurl
+				acceptEncoding = value;
+				continue;
+			}
+			if (isChunkedBody() && "Transfer-Encoding".equalsIgnoreCase(entry.getKey())) {
+				continue;
+			}
 			Log.d(TAG, "header: " + entry.getKey() + " => " + value);
 			headers.add(entry.getKey() + ": " + value);
 		}
+		if (isChunkedBody()) {
+			headers.add("Transfer-Encoding: chunked");
+		}
+		if (decodeContentInNative) {
+			opts.set(OptObjectPoint.CURLOPT_ACCEPT_ENCODING, acceptEncoding);
+		}
 		Log.d(TAG, "add hreader: " + headers.size());
-		curl.curlEasySetopt(OptObjectPoint.CURLOPT_HTTPHEADER, headers.toArray(new String[headerMap.size()]));
+		curl.curlEasySetopt(OptObjectPoint.CURLOPT_HTTPHEADER, headers.toArray(new String[headers.size()]));
+	}
+
+	private boolean isChunkedBody() {
+		return bodyStream != null && bodyStreamLength < 0;
 	}
 
 	private boolean isMultipart() {
@@ -414,7 +1606,18 @@ public class CurlHttp {
 	
 	private void setPostParams() {
 		Log.d(TAG, "set post params");
-		if (!isMultipart()) {
+		if (bodyStream != null) {
+			setBodyStream(bodyStream);
+			if (bodyStreamLength >= 0) {
+				opts.set(OptLong.CURLOPT_POSTFIELDSIZE, bodyStreamLength);
+			}
+		} else if (bodyBuffer != null) {
+			opts.set(OptLong.CURLOPT_POSTFIELDSIZE, bodyBuffer.remaining());
+			CurlCode code = curl.curlEasySetopt(OptObjectPoint.CURLOPT_POSTFIELDS, bodyBuffer);
+			if (code != CurlCode.CURLE_OK) {
+				throw new RuntimeException("set body buffer fail: " + code);
+			}
+		} else if (!isMultipart()) {
 			// simple form
 			// user provided body
 			byte[] postBody = body;
@@ -426,11 +1629,11 @@ public class CurlHttp {
 			}
 			
 			if (postBody != null) {
-				curl.curlEasySetopt(OptLong.CURLOPT_POSTFIELDSIZE, postBody.length);
+				opts.set(OptLong.CURLOPT_POSTFIELDSIZE, postBody.length);
 				curl.curlEasySetopt(OptObjectPoint.CURLOPT_POSTFIELDS, postBody);
 			} else {
 				// no data
-				curl.curlEasySetopt(OptLong.CURLOPT_POSTFIELDSIZE, 0);
+				opts.set(OptLong.CURLOPT_POSTFIELDSIZE, 0);
 			}
 		} else {
 			// multipart
@@ -482,6 +1685,55 @@ public class CurlHttp {
 		return null;
 	}
 	
+	/**
+	 * 
+	 * @return null if not a url with host
+	 */
+	private URL parseUrl() {
+		try {
+			URL parsed = new URL(url);
+			if (parsed.getHost() == null || parsed.getHost().length() == 0) {
+				return null;
+			}
+			return parsed;
+		} catch (MalformedURLException e) {
+			logger.w("parse url fail: %s", url, e);
+			return null;
+		}
+	}
+	
+	private static int getPort(URL parsed) {
+		return parsed.getPort() != -1 ? parsed.getPort() : parsed.getDefaultPort();
+	}
+	
+	private void applyShare() {
+		CurlCode code = curl.curlEasySetopt(OptObjectPoint.CURLOPT_SHARE, share);
+		if (code != CurlCode.CURLE_OK) {
+			Log.w(TAG, "set share fail: " + code);
+		} else if (share != null && share.isShared(CurlShare.LockData.COOKIE)) {
+			// enable cookie engine
+			opts.set(OptObjectPoint.CURLOPT_COOKIEFILE, "");
+		}
+	}
+	
+	private void setCaBundle() {
+		CurlCode code = curl.setCaBundle(caBundle);
+		if (code == CurlCode.CURLE_NOT_BUILT_IN) {
+			// parsed by libcurl per connection
+			opts.set(OptObjectPoint.CURLOPT_CAINFO, caBundle);
+		} else if (code != CurlCode.CURLE_OK) {
+			throw new CurlException(code);
+		}
+	}
+	
+	private void setResolve(URL parsed) {
+		List<String> entries = DnsCache.getDefault().getResolveEntries(parsed.getHost(), getPort(parsed));
+		if (!entries.isEmpty()) {
+			logger.d("resolve: %s", entries);
+			curl.curlEasySetopt(OptObjectPoint.CURLOPT_RESOLVE, entries.toArray(new String[entries.size()]));
+		}
+	}
+	
 	private void setProxy() {
 		if (useSystemProxy && proxyHost == null) {
 			proxyHost = System.getProperty("http.proxyHost");
@@ -492,8 +1744,8 @@ public class CurlHttp {
 		}
 		if (proxyHost != null) {
 			Log.d(TAG, "Set http proxy: " + proxyHost + ":" + proxyPort);
-			curl.curlEasySetopt(OptObjectPoint.CURLOPT_PROXY, proxyHost);
-			curl.curlEasySetopt(OptLong.CURLOPT_PROXYPORT, proxyPort);
+			opts.set(OptObjectPoint.CURLOPT_PROXY, proxyHost);
+			opts.set(OptLong.CURLOPT_PROXYPORT, proxyPort);
 		}
 	}
 }
@@ -0,0 +1,294 @@
+package com.wealoha.libcurldroid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.wealoha.libcurldroid.util.Logger;
+
+/**
+ * <h1>curl_multi Jni Wrapper</h1>
+ *
+ * One loop thread drives all transfers added, instead of blocking a thread per request.<br/>
+ *
+ * <pre>
+ * CurlMulti multi = CurlMulti.getDefault();
+ * Future&lt;Result&gt; future = CurlHttp.newInstance().getUrl(url).performAsync(multi, null);
+ * </pre>
+ *
+ * Callbacks (write, header, done...) of transfers added are called on the loop thread, keep them short.
+ *
+ * @see http://curl.haxx.se/libcurl/c/libcurl-multi.html
+ */
+public class CurlMulti {
+
+	private static final Logger logger = Logger.getLogger(CurlMulti.class);
+
+	private static final int WAIT_TIMEOUT_MILLIS = 1000;
+
+	private static CurlMulti DEFAULT;
+
+	private final long handle;
+
+	// added from other threads, picked up by the loop thread
+	private final LinkedList<Transfer> pendingList = new LinkedList<Transfer>();
+
+	// running transfers, by easy handle (touched by the loop thread only)
+	private final Map<Long, Transfer> transferMap = new HashMap<Long, Transfer>();
+
+	private final Thread loopThread;
+
+	private volatile boolean shutdown = false;
+
+	public interface Callback {
+		/**
+		 * Called on the loop thread when transfer done, curl is removed from multi already.
+		 *
+		 * @param curl
+		 * @param code result of the transfer
+		 */
+		public void onDone(Curl curl, CurlCode code);
+	}
+
+	private static class Transfer {
+
+		private final Curl curl;
+		private final Callback callback;
+
+		public Transfer(Curl curl, Callback callback) {
+			this.curl = curl;
+			this.callback = callback;
+		}
+	}
+
+	/**
+	 * Shared multi (and loop thread), HTTP/2 multiplexing enabled if {@link #isMultiplexSupported()}
+	 *
+	 * @return
+	 */
+	public static synchronized CurlMulti getDefault() {
+		if (DEFAULT == null || DEFAULT.shutdown) {
+			DEFAULT = new CurlMulti(isMultiplexSupported());
+		}
+		return DEFAULT;
+	}
+
+	/**
+	 *
+	 * @return true if libcurl is 7.43+ built with nghttp2
+	 */
+	public static boolean isMultiplexSupported() {
+		// global init, load library
+		new Curl();
+		return isMultiplexSupportedNative();
+	}
+
+	/**
+	 * create multi handle (no multiplexing) and start loop thread
+	 *
+	 * @throws CurlException
+	 */
+	public CurlMulti() throws CurlException {
+		this(false);
+	}
+
+	/**
+	 * create multi handle and start loop thread
+	 *
+	 * @param multiplex true: HTTP/2 requests to the same origin share one connection (CURLPIPE_MULTIPLEX),
+	 * 			  a new transfer waits for a connection being set up (CURLOPT_PIPEWAIT) instead of opening another.
+	 * 			  Requires libcurl built with nghttp2 (7.43+), see jni/BUILD.md, ignored otherwise
+	 * @throws CurlException
+	 */
+	public CurlMulti(boolean multiplex) throws CurlException {
+		// global init
+		new Curl();
+
+		handle = curlMultiInitNative();
+		if (handle == 0) {
+			throw new CurlException("curl multi init native fail");
+		}
+
+		if (multiplex) {
+			// CURLMOPT_PIPELINING of older libcurl turns on http/1.1 pipelining instead, checked in native
+			CurlCode code = CurlCode.fromValue(curlMultiSetMultiplexNative(handle));
+			if (code != CurlCode.CURLE_OK) {
+				logger.w("multiplex not supported by libcurl: %s", code);
+			}
+		}
+
+		loopThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				loop();
+			}
+		}, "libcurldroid-multi");
+		loopThread.setDaemon(true);
+		loopThread.start();
+	}
+
+	/**
+	 * Add a ready to perform easy handle, it's transfer runs on loop thread.
+	 *
+	 * DO NOT touch curl until callback called.
+	 *
+	 * @param curl
+	 * @param callback required
+	 */
+	public void add(Curl curl, Callback callback) {
+		if (curl == null || !curl.isInit()) {
+			throw new IllegalArgumentException("curl not init");
+		}
+		if (callback == null) {
+			throw new IllegalArgumentException("callback is required");
+		}
+		synchronized (pendingList) {
+			if (shutdown) {
+				throw new IllegalStateException("multi already shutdown");
+			}
+			pendingList.add(new Transfer(curl, callback));
+			curlMultiWakeupNative(handle);
+		}
+	}
+
+	/**
+	 * Stop loop thread, transfers not done are aborted
+	 * (callback with {@link CurlCode#CURLE_ABORTED_BY_CALLBACK})
+	 */
+	public void shutdown() {
+		synchronized (pendingList) {
+			if (shutdown) {
+				return;
+			}
+			shutdown = true;
+			curlMultiWakeupNative(handle);
+		}
+	}
+
+	private void loop() {
+		logger.i("multi loop start");
+		int[] running = new int[1];
+		long[] done = new long[2];
+		while (!shutdown) {
+			try {
+				addPending();
+
+				int code = curlMultiPerformNative(handle, running);
+				if (code != 0) {
+					logger.w("curl_multi_perform fail: %d", code);
+				}
+
+				while (curlMultiInfoReadNative(handle, done) >= 0) {
+					onDone(done[0], CurlCode.fromValue((int) done[1]));
+				}
+
+				curlMultiWaitNative(handle, WAIT_TIMEOUT_MILLIS);
+			} catch (Throwable t) {
+				logger.w("multi loop fail", t);
+			}
+		}
+
+		logger.i("multi loop shutdown, abort transfers: %d", transferMap.size());
+		List<Long> easyHandles = new ArrayList<Long>(transferMap.keySet());
+		for (Long easyHandle : easyHandles) {
+			onDone(easyHandle, CurlCode.CURLE_ABORTED_BY_CALLBACK);
+		}
+		List<Transfer> notStarted;
+		synchronized (pendingList) {
+			notStarted = new ArrayList<Transfer>(pendingList);
+			pendingList.clear();
+		}
+		for (Transfer transfer : notStarted) {
+			callback(transfer, CurlCode.CURLE_ABORTED_BY_CALLBACK);
+		}
+		synchronized (pendingList) {
+			curlMultiCleanupNative(handle);
+		}
+	}
+
+	private void addPending() {
+		List<Transfer> adding;
+		synchronized (pendingList) {
+			if (pendingList.isEmpty()) {
+				return;
+			}
+			adding = new ArrayList<Transfer>(pendingList);
+			pendingList.clear();
+		}
+
+		for (Transfer transfer : adding) {
+			long easyHandle = transfer.curl.getHandle();
+			int code = curlMultiAddHandleNative(handle, easyHandle);
+			if (code != 0) {
+				logger.w("curl_multi_add_handle fail: %d", code);
+				callback(transfer, CurlCode.CURLE_FAILED_INIT);
+			} else {
+				transferMap.put(easyHandle, transfer);
+			}
+		}
+		logger.v("transfer added: %d, running: %d", adding.size(), transferMap.size());
+	}
+
+	private void onDone(long easyHandle, CurlCode code) {
+		Transfer transfer = transferMap.remove(easyHandle);
+		if (transfer == null) {
+			logger.w("transfer not found: %d", easyHandle);
+			return;
+		}
+		curlMultiRemoveHandleNative(handle, easyHandle);
+		callback(transfer, code);
+	}
+
+	private void callback(Transfer transfer, CurlCode code) {
+		try {
+			transfer.callback.onDone(transfer.curl, code);
+		} catch (Throwable t) {
+			logger.w("done callback fail", t);
+		}
+	}
+
+	private native long curlMultiInitNative();
+
+	private native void curlMultiCleanupNative(long handle);
+
+	/**
+	 * CURLPIPE_MULTIPLEX, called before loop thread started only
+	 *
+	 * @param handle
+	 * @return {@link CurlCode#CURLE_NOT_BUILT_IN} if not {@link #isMultiplexSupported()}
+	 */
+	private native int curlMultiSetMultiplexNative(long handle);
+
+	private static native boolean isMultiplexSupportedNative();
+
+	private native int curlMultiAddHandleNative(long handle, long easyHandle);
+
+	private native int curlMultiRemoveHandleNative(long handle, long easyHandle);
+
+	/**
+	 *
+	 * @param handle
+	 * @param running [0] running handles
+	 * @return CURLMcode
+	 */
+	private native int curlMultiPerformNative(long handle, int[] running);
+
+	private native int curlMultiWaitNative(long handle, int timeoutMillis);
+
+	private native void curlMultiWakeupNative(long handle);
+
+	/**
+	 *
+	 * @param handle
+	 * @param done [0] easy handle, [1] CURLcode
+	 * @return messages left in queue, -1 if nothing done
+	 */
+	private native int curlMultiInfoReadNative(long handle, long[] done);
+
+	static {
+		System.loadLibrary("curldroid");
+	}
+}
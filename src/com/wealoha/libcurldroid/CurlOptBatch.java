@@ -0,0 +1,135 @@
+package com.wealoha.libcurldroid;
+
+import com.wealoha.libcurldroid.CurlOpt.OptLong;
+import com.wealoha.libcurldroid.CurlOpt.OptObjectPoint;
+
+/**
+ * Options packed in arrays, applied by {@link Curl#curlEasySetopt(CurlOptBatch)} in one jni call.
+ *
+ * <pre>
+ * CurlOptBatch batch = new CurlOptBatch() //
+ *     .set(OptObjectPoint.CURLOPT_URL, url) //
+ *     .set(OptLong.CURLOPT_TIMEOUT_MS, 1000 * 10);
+ * CurlCode code = curl.curlEasySetopt(batch);
+ * </pre>
+ *
+ * Options are applied in the order added.
+ */
+public class CurlOptBatch {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int size;
+	private int[] opts;
+	private long[] longValues;
+	private String[] stringValues;
+	private int[] results;
+
+	public CurlOptBatch() {
+		opts = new int[DEFAULT_CAPACITY];
+		longValues = new long[DEFAULT_CAPACITY];
+		stringValues = new String[DEFAULT_CAPACITY];
+		results = new int[DEFAULT_CAPACITY];
+	}
+
+	public CurlOptBatch set(OptLong opt, long value) {
+		add(opt.getValue(), value, null);
+		return this;
+	}
+
+	/**
+	 *
+	 * @param opt
+	 * @param value null: back to default
+	 * @return
+	 */
+	public CurlOptBatch set(OptObjectPoint opt, String value) {
+		add(opt.getValue(), 0, value);
+		return this;
+	}
+
+	private void add(int opt, long longValue, String stringValue) {
+		if (size == opts.length) {
+			int capacity = size * 2;
+			int[] newOpts = new int[capacity];
+			long[] newLongValues = new long[capacity];
+			String[] newStringValues = new String[capacity];
+			System.arraycopy(opts, 0, newOpts, 0, size);
+			System.arraycopy(longValues, 0, newLongValues, 0, size);
+			System.arraycopy(stringValues, 0, newStringValues, 0, size);
+			opts = newOpts;
+			longValues = newLongValues;
+			stringValues = newStringValues;
+			results = new int[capacity];
+		}
+		opts[size] = opt;
+		longValues[size] = longValue;
+		stringValues[size] = stringValue;
+		size++;
+	}
+
+	/**
+	 *
+	 * @param other options of, appended in order
+	 * @return
+	 */
+	public CurlOptBatch addAll(CurlOptBatch other) {
+		for (int i = 0; i < other.size; i++) {
+			add(other.opts[i], other.longValues[i], other.stringValues[i]);
+		}
+		return this;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return option id of the index
+	 */
+	public int getOpt(int index) {
+		checkIndex(index);
+		return opts[index];
+	}
+
+	/**
+	 *
+	 * @param index in the order added
+	 * @return result of last apply
+	 */
+	public CurlCode getResult(int index) {
+		checkIndex(index);
+		return CurlCode.fromValue(results[index]);
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			stringValues[i] = null;
+		}
+		size = 0;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+	}
+
+	int[] getOpts() {
+		return opts;
+	}
+
+	long[] getLongValues() {
+		return longValues;
+	}
+
+	String[] getStringValues() {
+		return stringValues;
+	}
+
+	int[] getResults() {
+		return results;
+	}
+}
@@ -0,0 +1,301 @@
+package com.wealoha.libcurldroid;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.wealoha.libcurldroid.util.Logger;
+
+/**
+ * <h1>Pool of reusable curl easy handles</h1>
+ *
+ * A handle given back is reset (curl_easy_reset), but keeps its live connections,
+ * dns cache and ssl session cache, so the next request to the same host
+ * skips TCP and TLS handshakes (HTTP keep-alive).<br/>
+ *
+ * Most recently used handle is borrowed first, idle handles are cleaned up after keepAliveMillis.
+ * A handle last used for the same origin (scheme://host:port) is preferred by {@link #borrow(String)},
+ * it holds the live connection to that origin (see {@link CurlHttp#preconnect(String)}).
+ *
+ * <pre>
+ * CurlPool pool = CurlPool.Builder.newInstance() //
+ *     .maxIdle(8) //
+ *     .keepAliveMillis(1000 * 60) //
+ *     .build();
+ *
+ * CurlHttp.newInstance(pool).getUrl(url).perform();
+ * </pre>
+ */
+public class CurlPool {
+
+	private static final Logger logger = Logger.getLogger(CurlPool.class);
+
+	private static CurlPool DEFAULT;
+
+	// head is the most recently given back
+	private final LinkedList<IdleCurl> idleList;
+	private final int maxIdle;
+	private final long keepAliveMillis;
+	private final Timer evictTimer;
+	// guarded by idleList, handles given back after close are cleaned up
+	private boolean closed;
+
+	private static class IdleCurl {
+
+		private final Curl curl;
+		private final long idleSinceMillis;
+		// last used for, may be null
+		private final String origin;
+
+		public IdleCurl(Curl curl, long idleSinceMillis, String origin) {
+			this.curl = curl;
+			this.idleSinceMillis = idleSinceMillis;
+			this.origin = origin;
+		}
+	}
+
+	public static class Builder {
+
+		private int maxIdle = 5;
+		private long keepAliveMillis = 60 * 1000;
+
+		public static Builder newInstance() {
+			return new Builder();
+		}
+
+		/**
+		 * max idle handles kept in pool, handles given back beyond this are cleaned up
+		 *
+		 * @param max 0 means no pooling, default 5
+		 * @return
+		 */
+		public Builder maxIdle(int max) {
+			this.maxIdle = max;
+			return this;
+		}
+
+		/**
+		 * Idle handle (and it's connections) cleaned up after this
+		 *
+		 * @param millis default 60s
+		 * @return
+		 */
+		public Builder keepAliveMillis(long millis) {
+			this.keepAliveMillis = millis;
+			return this;
+		}
+
+		public CurlPool build() {
+			if (maxIdle < 0) {
+				throw new IllegalStateException("maxIdle must >= 0");
+			}
+			if (keepAliveMillis <= 0) {
+				throw new IllegalStateException("keepAliveMillis must > 0");
+			}
+			return new CurlPool(maxIdle, keepAliveMillis);
+		}
+	}
+
+	/**
+	 * Shared pool used by {@link CurlHttp#newInstance()}
+	 *
+	 * @return
+	 */
+	public static synchronized CurlPool getDefault() {
+		if (DEFAULT == null) {
+			DEFAULT = Builder.newInstance().build();
+		}
+		return DEFAULT;
+	}
+
+	private CurlPool(int maxIdle, long keepAliveMillis) {
+		this.maxIdle = maxIdle;
+		this.keepAliveMillis = keepAliveMillis;
+		this.idleList = new LinkedList<IdleCurl>();
+
+		evictTimer = new Timer(true);
+		initEvictTimer();
+	}
+
+	private void initEvictTimer() {
+		logger.i("init idle handle evict timer");
+		long interval = Math.max(keepAliveMillis / 2, 1000);
+		evictTimer.scheduleAtFixedRate(new TimerTask() {
+
+			@Override
+			public void run() {
+				try {
+					evictIdle(System.currentTimeMillis() - keepAliveMillis);
+				} catch (Throwable t) {
+					logger.w("evict idle handle fail", t);
+				}
+			}
+		}, interval, interval);
+	}
+
+	/**
+	 * Borrow a handle, idle one first.
+	 *
+	 * must {@link #giveBack(Curl)} after use
+	 *
+	 * @return
+	 * @throws CurlException init fail
+	 */
+	public Curl borrow() throws CurlException {
+		return borrow(null);
+	}
+
+	/**
+	 * Borrow a handle, idle one last used for the origin first, then most recently used one.
+	 *
+	 * must {@link #giveBack(Curl, String)} after use
+	 *
+	 * @param origin scheme://host:port, may be null
+	 * @return
+	 * @throws CurlException init fail
+	 */
+	public Curl borrow(String origin) throws CurlException {
+		synchronized (idleList) {
+			IdleCurl idle = removeIdle(origin);
+			if (idle == null && !idleList.isEmpty()) {
+				idle = idleList.removeFirst();
+			}
+			if (idle != null) {
+				logger.v("borrow idle handle, idle=%d", idleList.size());
+				return idle.curl;
+			}
+		}
+
+		logger.v("no idle handle, create new one");
+		Curl curl = new Curl();
+		curl.curlEasyInit();
+		return curl;
+	}
+
+	/**
+	 * Swap a borrowed handle (not performed) for an idle one last used for the origin.
+	 *
+	 * @param curl borrowed
+	 * @param origin scheme://host:port
+	 * @return the idle one if any, otherwise curl
+	 */
+	public Curl exchange(Curl curl, String origin) {
+		IdleCurl idle;
+		synchronized (idleList) {
+			idle = removeIdle(origin);
+		}
+		if (idle == null) {
+			return curl;
+		}
+		logger.v("exchange for idle handle of %s", origin);
+		giveBack(curl);
+		return idle.curl;
+	}
+
+	/**
+	 * Give back a borrowed handle, options are reset
+	 *
+	 * @param curl
+	 */
+	public void giveBack(Curl curl) {
+		giveBack(curl, null);
+	}
+
+	/**
+	 * Give back a borrowed handle, options are reset
+	 *
+	 * @param curl
+	 * @param origin scheme://host:port last used for, may be null
+	 */
+	public void giveBack(Curl curl, String origin) {
+		if (curl == null || !curl.isInit()) {
+			return;
+		}
+
+		curl.curlEasyReset();
+
+		Curl overflow = null;
+		synchronized (idleList) {
+			if (closed) {
+				overflow = curl;
+			} else {
+				idleList.addFirst(new IdleCurl(curl, System.currentTimeMillis(), origin));
+				if (idleList.size() > maxIdle) {
+					overflow = idleList.removeLast().curl;
+				}
+			}
+		}
+
+		if (overflow != null) {
+			logger.v("pool full or closed, cleanup handle");
+			overflow.curlEasyCleanup();
+		}
+	}
+
+	/**
+	 * cleanup all idle handles (and close their connections)
+	 */
+	public void evictAll() {
+		evictIdle(Long.MAX_VALUE);
+	}
+
+	/**
+	 * stop the evict timer and cleanup idle handles, handles borrowed are cleaned up when given back.
+	 * Don't close {@link #getDefault()}
+	 */
+	public void close() {
+		synchronized (idleList) {
+			closed = true;
+		}
+		evictTimer.cancel();
+		evictAll();
+	}
+
+	/**
+	 *
+	 * @return idle handles in pool
+	 */
+	public int getIdleCount() {
+		synchronized (idleList) {
+			return idleList.size();
+		}
+	}
+
+	// under idleList lock
+	private IdleCurl removeIdle(String origin) {
+		if (origin == null) {
+			return null;
+		}
+		Iterator<IdleCurl> it = idleList.iterator();
+		while (it.hasNext()) {
+			IdleCurl idle = it.next();
+			if (origin.equals(idle.origin)) {
+				it.remove();
+				return idle;
+			}
+		}
+		return null;
+	}
+
+	private void evictIdle(long idleBeforeMillis) {
+		LinkedList<Curl> evicted = new LinkedList<Curl>();
+		synchronized (idleList) {
+			Iterator<IdleCurl> it = idleList.iterator();
+			while (it.hasNext()) {
+				IdleCurl idle = it.next();
+				if (idle.idleSinceMillis < idleBeforeMillis) {
+					evicted.add(idle.curl);
+					it.remove();
+				}
+			}
+		}
+
+		if (evicted.size() > 0) {
+			logger.d("evict idle handles: %d", evicted.size());
+			for (Curl curl : evicted) {
+				curl.curlEasyCleanup();
+			}
+		}
+	}
+}
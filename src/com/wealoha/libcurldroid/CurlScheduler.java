@@ -0,0 +1,273 @@
+package com.wealoha.libcurldroid;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.wealoha.libcurldroid.util.Logger;
+
+/**
+ * <h1>Request scheduler</h1>
+ *
+ * Bounds requests running at the same time (in total and per host), a waiting request of higher
+ * {@link Priority} always starts first, so an api call the user is waiting for is not starved by image loads.<br/>
+ *
+ * Requests waiting in the same priority start in {@link Order#FIFO} or {@link Order#LIFO}
+ * (default LIFO for {@link Priority#LOW}: images scrolled to last are wanted first).
+ *
+ * <pre>
+ * CurlScheduler scheduler = CurlScheduler.Builder.newInstance() //
+ *     .maxRequests(16) //
+ *     .maxRequestsPerHost(4) //
+ *     .order(Priority.LOW, Order.LIFO) //
+ *     .build();
+ *
+ * Result result = scheduler.perform(CurlHttp.newInstance().getUrl(url), null, Priority.HIGH);
+ * </pre>
+ */
+public class CurlScheduler {
+
+	private static final Logger logger = Logger.getLogger(CurlScheduler.class);
+
+	private static CurlScheduler DEFAULT;
+
+	private final int maxRequests;
+	private final int maxRequestsPerHost;
+	private final Map<Priority, Order> orderMap;
+
+	// guarded by this
+	private final Map<Priority, LinkedList<Waiter>> waitingMap;
+	private final Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+	private int running;
+
+	/**
+	 * Higher first
+	 */
+	public enum Priority {
+		/**
+		 * user is waiting, api calls
+		 */
+		HIGH, //
+		NORMAL, //
+		/**
+		 * prefetch, thumbnails
+		 */
+		LOW, //
+		;
+	}
+
+	public enum Order {
+		FIFO, //
+		LIFO, //
+		;
+	}
+
+	private static class Waiter {
+
+		private final String host;
+		private boolean granted;
+
+		public Waiter(String host) {
+			this.host = host;
+		}
+	}
+
+	public static class Builder {
+
+		private int maxRequests = 16;
+		private int maxRequestsPerHost = 4;
+		private final Map<Priority, Order> orderMap = new EnumMap<Priority, Order>(Priority.class);
+
+		public static Builder newInstance() {
+			return new Builder();
+		}
+
+		private Builder() {
+			orderMap.put(Priority.HIGH, Order.FIFO);
+			orderMap.put(Priority.NORMAL, Order.FIFO);
+			orderMap.put(Priority.LOW, Order.LIFO);
+		}
+
+		/**
+		 *
+		 * @param max default 16
+		 * @return
+		 */
+		public Builder maxRequests(int max) {
+			this.maxRequests = max;
+			return this;
+		}
+
+		/**
+		 *
+		 * @param max default 4
+		 * @return
+		 */
+		public Builder maxRequestsPerHost(int max) {
+			this.maxRequestsPerHost = max;
+			return this;
+		}
+
+		/**
+		 *
+		 * @param priority
+		 * @param order default FIFO, LIFO for {@link Priority#LOW}
+		 * @return
+		 */
+		public Builder order(Priority priority, Order order) {
+			orderMap.put(priority, order);
+			return this;
+		}
+
+		public CurlScheduler build() {
+			if (maxRequests <= 0) {
+				throw new IllegalStateException("maxRequests must > 0");
+			}
+			if (maxRequestsPerHost <= 0) {
+				throw new IllegalStateException("maxRequestsPerHost must > 0");
+			}
+			return new CurlScheduler(maxRequests, maxRequestsPerHost, orderMap);
+		}
+	}
+
+	/**
+	 * Shared by {@link com.wealoha.libcurldroid.retrofit.RetrofitCurlClient} and {@link com.wealoha.libcurldroid.picasso.PicassoCurlDownloader}
+	 *
+	 * @return
+	 */
+	public static synchronized CurlScheduler getDefault() {
+		if (DEFAULT == null) {
+			DEFAULT = Builder.newInstance().build();
+		}
+		return DEFAULT;
+	}
+
+	private CurlScheduler(int maxRequests, int maxRequestsPerHost, Map<Priority, Order> orderMap) {
+		this.maxRequests = maxRequests;
+		this.maxRequestsPerHost = maxRequestsPerHost;
+		this.orderMap = new EnumMap<Priority, Order>(orderMap);
+		this.waitingMap = new EnumMap<Priority, LinkedList<Waiter>>(Priority.class);
+		for (Priority priority : Priority.values()) {
+			waitingMap.put(priority, new LinkedList<Waiter>());
+		}
+	}
+
+	/**
+	 * wait for a slot, then perform
+	 *
+	 * @param curlHttp url set
+	 * @param multi null: perform on calling thread
+	 * @param priority
+	 * @return
+	 * @throws CurlException
+	 * @throws CurlCancelledException interrupted while waiting
+	 */
+	public Result perform(CurlHttp curlHttp, CurlMulti multi, Priority priority) throws CurlException {
+		String host = getHost(curlHttp.getRequestUrl());
+		try {
+			acquire(host, priority);
+		} catch (InterruptedException e) {
+			curlHttp.cancel();
+			// never performed, give back handle
+			curlHttp.release();
+			Thread.currentThread().interrupt();
+			throw new CurlCancelledException();
+		}
+		try {
+			return curlHttp.perform(multi);
+		} finally {
+			release(host);
+		}
+	}
+
+	/**
+	 *
+	 * @return requests running
+	 */
+	public synchronized int getRunningCount() {
+		return running;
+	}
+
+	/**
+	 *
+	 * @return requests waiting for a slot
+	 */
+	public synchronized int getWaitingCount() {
+		int count = 0;
+		for (LinkedList<Waiter> waiting : waitingMap.values()) {
+			count += waiting.size();
+		}
+		return count;
+	}
+
+	private synchronized void acquire(String host, Priority priority) throws InterruptedException {
+		Waiter waiter = new Waiter(host);
+		LinkedList<Waiter> waiting = waitingMap.get(priority);
+		if (orderMap.get(priority) == Order.LIFO) {
+			waiting.addFirst(waiter);
+		} else {
+			waiting.addLast(waiter);
+		}
+		dispatch();
+		try {
+			while (!waiter.granted) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			if (waiter.granted) {
+				release(host);
+			} else {
+				waiting.remove(waiter);
+			}
+			throw e;
+		}
+	}
+
+	private synchronized void release(String host) {
+		running--;
+		Integer count = runningPerHost.get(host);
+		if (count == null || count <= 1) {
+			runningPerHost.remove(host);
+		} else {
+			runningPerHost.put(host, count - 1);
+		}
+		dispatch();
+	}
+
+	// start waiters can run, higher priority first, a waiter of a host at its cap doesn't block others
+	private void dispatch() {
+		boolean granted = false;
+		for (Priority priority : Priority.values()) {
+			Iterator<Waiter> it = waitingMap.get(priority).iterator();
+			while (running < maxRequests && it.hasNext()) {
+				Waiter waiter = it.next();
+				Integer count = runningPerHost.get(waiter.host);
+				if (count != null && count >= maxRequestsPerHost) {
+					continue;
+				}
+				it.remove();
+				waiter.granted = true;
+				granted = true;
+				running++;
+				runningPerHost.put(waiter.host, count == null ? 1 : count + 1);
+			}
+		}
+		if (granted) {
+			logger.v("running: %d", running);
+			notifyAll();
+		}
+	}
+
+	private static String getHost(String url) {
+		try {
+			String host = new URL(url).getHost();
+			return host == null ? "" : host.toLowerCase();
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.wealoha.libcurldroid;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.wealoha.libcurldroid.util.Logger;
+
+/**
+ * <h1>curl_share Jni Wrapper</h1>
+ *
+ * Data (dns cache, ssl sessions, cookies) shared between all easy handles attached,
+ * a new handle skips dns resolving and full TLS handshake to a host seen before.<br/>
+ *
+ * Lock callbacks (one mutex per {@link LockData}) are set in jni, safe to use across threads.
+ *
+ * <pre>
+ * CurlShare share = new CurlShare() //
+ *     .share(LockData.DNS) //
+ *     .share(LockData.SSL_SESSION) //
+ *     .share(LockData.COOKIE);
+ *
+ * CurlHttp.newInstance().setShare(share).getUrl(url).perform();
+ * </pre>
+ *
+ * @see http://curl.haxx.se/libcurl/c/libcurl-share.html
+ */
+public class CurlShare {
+
+	private static final Logger logger = Logger.getLogger(CurlShare.class);
+
+	// curl_share_setopt options
+	private static final int CURLSHOPT_SHARE = 1;
+	private static final int CURLSHOPT_UNSHARE = 2;
+
+	private static CurlShare DEFAULT;
+
+	private long handle;
+
+	private final Set<LockData> shared = EnumSet.noneOf(LockData.class);
+
+	/**
+	 * curl_lock_data
+	 */
+	public enum LockData {
+		COOKIE(2), //
+		DNS(3), //
+		SSL_SESSION(4), //
+		;
+
+		private final int value;
+
+		private LockData(int value) {
+			this.value = value;
+		}
+
+		public int getValue() {
+			return value;
+		}
+	}
+
+	/**
+	 * Shared by {@link CurlHttp#newInstance()}, share dns cache and ssl sessions (cookies not shared)
+	 *
+	 * @return
+	 */
+	public static synchronized CurlShare getDefault() {
+		if (DEFAULT == null) {
+			DEFAULT = new CurlShare() //
+					.share(LockData.DNS) //
+					.share(LockData.SSL_SESSION);
+		}
+		return DEFAULT;
+	}
+
+	public CurlShare() throws CurlException {
+		// global init
+		new Curl();
+
+		handle = curlShareInitNative();
+		if (handle == 0) {
+			throw new CurlException("curl share init native fail");
+		}
+	}
+
+	/**
+	 * set before attached to any handle
+	 *
+	 * @param data
+	 * @return
+	 */
+	public synchronized CurlShare share(LockData data) {
+		int code = curlShareSetoptNative(handle, CURLSHOPT_SHARE, data.getValue());
+		if (code != 0) {
+			throw new CurlException("curl share setopt fail: " + data + " " + code);
+		}
+		shared.add(data);
+		return this;
+	}
+
+	public synchronized CurlShare unshare(LockData data) {
+		int code = curlShareSetoptNative(handle, CURLSHOPT_UNSHARE, data.getValue());
+		if (code != 0) {
+			throw new CurlException("curl share setopt fail: " + data + " " + code);
+		}
+		shared.remove(data);
+		return this;
+	}
+
+	public synchronized boolean isShared(LockData data) {
+		return shared.contains(data);
+	}
+
+	/**
+	 * cleanup, all handles must be detached (cleanup or set CURLOPT_SHARE null) first.
+	 *
+	 * @return false if still in use
+	 */
+	public synchronized boolean close() {
+		if (handle == 0) {
+			return true;
+		}
+		int code = curlShareCleanupNative(handle);
+		if (code != 0) {
+			logger.w("curl share cleanup fail, still in use? %d", code);
+			return false;
+		}
+		handle = 0;
+		return true;
+	}
+
+	/**
+	 *
+	 * @return native handle, 0 if closed
+	 */
+	synchronized long getHandle() {
+		return handle;
+	}
+
+	private native long curlShareInitNative();
+
+	private native int curlShareSetoptNative(long handle, int opt, int value);
+
+	private native int curlShareCleanupNative(long handle);
+
+	static {
+		System.loadLibrary("curldroid");
+	}
+}
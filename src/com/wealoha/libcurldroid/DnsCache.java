@@ -0,0 +1,238 @@
+package com.wealoha.libcurldroid;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.wealoha.libcurldroid.util.Logger;
+
+/**
+ * Process wide dns cache, resolved ahead of requests, pinned into handles by {@link CurlOpt.OptObjectPoint#CURLOPT_RESOLVE}
+ * so the first request to a host skips dns lookup.<br/>
+ *
+ * Entries live {@link #setTtlMillis(long)}, an expired entry is refreshed in background and not pinned meanwhile.
+ *
+ * <pre>
+ * // app start
+ * Curl.prefetchDns("api.xxx.com", "img.xxx.com");
+ * </pre>
+ *
+ * @see http://curl.haxx.se/libcurl/c/CURLOPT_RESOLVE.html
+ */
+public class DnsCache {
+
+	private static final Logger logger = Logger.getLogger(DnsCache.class);
+
+	private static final long DEFAULT_TTL_MILLIS = 1000 * 60 * 5;
+
+	// retry a failed host after
+	private static final long FAIL_TTL_MILLIS = 1000 * 10;
+
+	private static final int RESOLVE_THREADS = 2;
+
+	private static DnsCache DEFAULT;
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private final ExecutorService executor;
+
+	private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+	private static class Entry {
+
+		// null: not resolved yet or fail
+		private String ip;
+		private long expireTime;
+		private boolean resolving;
+	}
+
+	/**
+	 * Used by {@link CurlHttp}
+	 *
+	 * @return
+	 */
+	public static synchronized DnsCache getDefault() {
+		if (DEFAULT == null) {
+			DEFAULT = new DnsCache();
+		}
+		return DEFAULT;
+	}
+
+	public DnsCache() {
+		executor = Executors.newFixedThreadPool(RESOLVE_THREADS, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "curl-dns");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @param millis default 5 minutes
+	 * @return
+	 */
+	public DnsCache setTtlMillis(long millis) {
+		if (millis <= 0) {
+			throw new IllegalArgumentException("ttl must > 0");
+		}
+		this.ttlMillis = millis;
+		return this;
+	}
+
+	/**
+	 * resolve in background, cached when done
+	 *
+	 * @param hosts
+	 */
+	public void prefetch(String... hosts) {
+		for (String host : hosts) {
+			if (host == null || isIpAddress(host)) {
+				continue;
+			}
+			refresh(host.toLowerCase());
+		}
+	}
+
+	/**
+	 *
+	 * @param host
+	 * @return cached ip, null if not cached or expired
+	 */
+	public String get(String host) {
+		host = host.toLowerCase();
+		synchronized (entries) {
+			Entry entry = entries.get(host);
+			if (entry == null || entry.ip == null || entry.expireTime < System.currentTimeMillis()) {
+				return null;
+			}
+			return entry.ip;
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Entries for {@link CurlOpt.OptObjectPoint#CURLOPT_RESOLVE}, pinned address replaced by the cached one.
+	 * An expired host is unpinned (back to libcurl resolving) and refreshed in background.
+	 *
+	 * @param host
+	 * @param port
+	 * @return empty if host never cached or failed to resolve
+	 */
+	public List<String> getResolveEntries(String host, int port) {
+		List<String> result = new ArrayList<String>(2);
+		if (isIpAddress(host)) {
+			return result;
+		}
+		host = host.toLowerCase();
+		String ip;
+		boolean expired;
+		synchronized (entries) {
+			Entry entry = entries.get(host);
+			if (entry == null) {
+				return result;
+			}
+			ip = entry.ip;
+			expired = entry.expireTime < System.currentTimeMillis();
+		}
+		// entries added by CURLOPT_RESOLVE never expire in libcurl dns cache (shared by CurlShare), remove first
+		if (expired) {
+			result.add("-" + host + ":" + port);
+			refresh(host);
+		} else if (ip != null) {
+			result.add("-" + host + ":" + port);
+			result.add(host + ":" + port + ":" + ip);
+		}
+		return result;
+	}
+
+	private void refresh(final String host) {
+		synchronized (entries) {
+			Entry entry = entries.get(host);
+			if (entry == null) {
+				entry = new Entry();
+				entries.put(host, entry);
+			}
+			if (entry.resolving) {
+				return;
+			}
+			entry.resolving = true;
+		}
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				String ip = resolve(host);
+				synchronized (entries) {
+					Entry entry = entries.get(host);
+					if (entry == null) {
+						// cleared
+						return;
+					}
+					entry.resolving = false;
+					if (ip == null) {
+						// keep unpinned, libcurl resolves itself
+						entry.ip = null;
+						entry.expireTime = System.currentTimeMillis() + FAIL_TTL_MILLIS;
+					} else {
+						entry.ip = ip;
+						entry.expireTime = System.currentTimeMillis() + ttlMillis;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @param host
+	 * @return ipv4 preferred, null if fail
+	 */
+	private String resolve(String host) {
+		long start = System.currentTimeMillis();
+		try {
+			InetAddress[] addresses = InetAddress.getAllByName(host);
+			InetAddress address = addresses[0];
+			for (InetAddress a : addresses) {
+				if (a instanceof Inet4Address) {
+					address = a;
+					break;
+				}
+			}
+			logger.d("resolved %s => %s (%dms)", host, address.getHostAddress(), System.currentTimeMillis() - start);
+			return address.getHostAddress();
+		} catch (UnknownHostException e) {
+			logger.w("resolve fail: %s", host, e);
+			return null;
+		}
+	}
+
+	private static boolean isIpAddress(String host) {
+		if (host.indexOf(':') >= 0) {
+			// ipv6
+			return true;
+		}
+		for (int i = 0; i < host.length(); i++) {
+			char c = host.charAt(i);
+			if (c != '.' && (c < '0' || c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,13 +1,17 @@
 package com.wealoha.libcurldroid;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
 import android.util.Log;
 
+import com.wealoha.libcurldroid.util.ChunkedBuffer;
+
 /**
  * 
  * 
@@ -20,15 +24,44 @@ public class Result {
 	private final int status;
 	private final String statusLine;
 	private final Map<String, String> headers;
-	private final byte[] body;
+	// guarded by this, merged by getBody()
+	private final ChunkedBuffer body;
+	private final TransferStats transferStats;
+	private final File file;
+	private final long fileCrc32;
 	private transient String bodyString;
 	private transient byte[] decodedBody;
 	public Result(int status, String statusLine, Map<String, String> headers, byte[] body) {
+		this(status, statusLine, headers, body, null);
+	}
+	
+	public Result(int status, String statusLine, Map<String, String> headers, byte[] body, TransferStats transferStats) {
+		this(status, statusLine, headers, body, transferStats, null, -1);
+	}
+	
+	/**
+	 * 
+	 * @param status
+	 * @param statusLine
+	 * @param headers
+	 * @param body
+	 * @param transferStats
+	 * @param file body downloaded to
+	 * @param fileCrc32 -1 if not computed
+	 */
+	public Result(int status, String statusLine, Map<String, String> headers, byte[] body, TransferStats transferStats, File file, long fileCrc32) {
+		this(status, statusLine, headers, ChunkedBuffer.wrap(body), transferStats, file, fileCrc32);
+	}
+	
+	Result(int status, String statusLine, Map<String, String> headers, ChunkedBuffer body, TransferStats transferStats, File file, long fileCrc32) {
 		super();
 		this.status = status;
 		this.statusLine = statusLine;
 		this.headers = headers;
 		this.body = body;
+		this.transferStats = transferStats;
+		this.file = file;
+		this.fileCrc32 = fileCrc32;
 	}
 	
 	public int getStatus() {
@@ -53,24 +86,72 @@ public class Result {
 	
 	/**
 	 * 
-	 * @return original body
+	 * @return timing of dns, connect, tls handshake... may be null
+	 */
+	public TransferStats getTransferStats() {
+		return transferStats;
+	}
+	
+	/**
+	 * 
+	 * @return body downloaded to, null if not {@link CurlHttp#downloadTo(File, boolean)} or {@link CurlHttp#downloadResumable(com.wealoha.libcurldroid.cache.DiskCache, String, boolean)}
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * 
+	 * @return CRC32 of the file, -1 if not computed
 	 */
-	public byte[] getBody() {
-		return body;
+	public long getFileCrc32() {
+		return fileCrc32;
 	}
 	
 	/**
 	 * 
-	 * @return decoded if body gzipped
+	 * @return original body, chunks merged on first call (no copy if pre-sized by Content-Length), prefer {@link #getBodyAsStream()}
+	 */
+	public synchronized byte[] getBody() {
+		return body.toByteArray();
+	}
+	
+	public synchronized int getBodyLength() {
+		return body.size();
+	}
+	
+	/**
+	 * 
+	 * @return original body, read without copy
+	 */
+	public synchronized InputStream getBodyAsStream() {
+		return body.getInputStream();
+	}
+	
+	/**
+	 * 
+	 * @return read-only views of the original body in order, no copy
+	 */
+	public synchronized ByteBuffer[] getBodyByteBuffers() {
+		return body.getByteBuffers();
+	}
+	
+	/**
+	 * 
+	 * @return decoded if body gzipped, same as {@link #getBody()} if decoded by libcurl ({@link CurlHttp#decodeContentInNative(boolean)})
 	 */
 	public byte[] getDecodedBody() throws IOException {
 		if (!"gzip".equalsIgnoreCase(getHeader("Content-Encoding"))) {
-			return body;
+			return getBody();
+		}
+		if (!isGzipped()) {
+			Log.w(TAG, "Content-Encoding: gzip but body not gzipped, decoded already");
+			return getBody();
 		}
 		if (decodedBody == null) {
 			Log.d(TAG, "uncompress gzipped content");
-			GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(body));
-			ByteArrayOutputStream byos = new ByteArrayOutputStream(body.length * 3);
+			GZIPInputStream gzis = new GZIPInputStream(getBodyAsStream());
+			ByteArrayOutputStream byos = new ByteArrayOutputStream(getBodyLength() * 3);
 			byte[] buf = new byte[4096];
 			int len;
 			while ((len = gzis.read(buf, 0, buf.length)) != -1) {
@@ -84,6 +165,12 @@ public class Result {
 		return decodedBody;
 	}
 	
+	// gzip magic number
+	private boolean isGzipped() throws IOException {
+		InputStream is = getBodyAsStream();
+		return is.read() == 0x1f && is.read() == 0x8b;
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -0,0 +1,73 @@
+package com.wealoha.libcurldroid;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Result of {@link CurlHttp#performStreaming()}, status and headers parsed, body still receiving.<br/>
+ *
+ * Read {@link #getBody()} to the end (or until no longer needed), then {@link #close()}.
+ */
+public class StreamingResult {
+
+	private final int status;
+	private final String statusLine;
+	private final Map<String, String> headers;
+	private final InputStream body;
+
+	StreamingResult(int status, String statusLine, Map<String, String> headers, InputStream body, final CurlHttp curlHttp) {
+		this.status = status;
+		this.statusLine = statusLine;
+		this.headers = headers;
+		this.body = new FilterInputStream(body) {
+
+			@Override
+			public void close() throws IOException {
+				// transfer stops if not done
+				curlHttp.cancel();
+				super.close();
+			}
+		};
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getStatusLine() {
+		return statusLine;
+	}
+
+	/**
+	 * 
+	 * @return Content-Encoding and Content-Length removed if body decoded by libcurl
+	 */
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public String getHeader(String header) {
+		return headers.get(header);
+	}
+
+	/**
+	 *
+	 * @return read throws {@link IOException} (cause {@link CurlException}) if the transfer fails
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	/**
+	 * close body, transfer cancelled if not done
+	 */
+	public void close() {
+		try {
+			body.close();
+		} catch (IOException e) {
+			// never
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package com.wealoha.libcurldroid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.wealoha.libcurldroid.util.Logger;
+
+/**
+ * <h1>TLS sessions persisted across process restarts</h1>
+ *
+ * Sessions negotiated by handles of {@link CurlHttp} are kept in native (by SNI host),
+ * saved to a directory periodically, and restored on {@link #install(File)},
+ * so the first connection to a host after restart resumes (abbreviated handshake).<br/>
+ *
+ * Requires libcurl built with OpenSSL and libcurldroid built with CURLDROID_USE_OPENSSL (see jni/BUILD.md),
+ * otherwise {@link #isSupported()} returns false and nothing is persisted.<br/>
+ *
+ * Session files contain the master secret, use a directory private to the app (next to the {@link com.wealoha.libcurldroid.cache.DiskCache} one).
+ *
+ * <pre>
+ * TlsSessionStore.install(new File(context.getCacheDir(), "tls_sessions"));
+ * </pre>
+ */
+public class TlsSessionStore {
+
+	private static final Logger logger = Logger.getLogger(TlsSessionStore.class);
+
+	private static final int MAX_SESSIONS = 32;
+
+	private static final long SAVE_INTERVAL_MILLIS = 30 * 1000;
+
+	private static final String FILE_SUFFIX = ".session";
+
+	private static TlsSessionStore INSTALLED;
+
+	private static volatile Boolean SUPPORTED;
+
+	private final File dir;
+
+	private final Timer saveTimer;
+
+	// of native sessions saved
+	private long savedVersion;
+
+	/**
+	 * restore sessions saved in dir, save new sessions to it
+	 *
+	 * @param dir created if not exists
+	 * @return installed one if called again
+	 */
+	public static synchronized TlsSessionStore install(File dir) {
+		if (INSTALLED != null) {
+			if (!INSTALLED.dir.equals(dir)) {
+				logger.w("already installed: %s", INSTALLED.dir);
+			}
+			return INSTALLED;
+		}
+		// global init, load library
+		new Curl();
+
+		INSTALLED = new TlsSessionStore(dir);
+		return INSTALLED;
+	}
+
+	/**
+	 *
+	 * @return null if not installed
+	 */
+	public static synchronized TlsSessionStore getInstalled() {
+		return INSTALLED;
+	}
+
+	/**
+	 *
+	 * @return false if not built with OpenSSL
+	 */
+	public static boolean isSupported() {
+		if (SUPPORTED == null) {
+			new Curl();
+			SUPPORTED = isSupportedNative();
+		}
+		return SUPPORTED;
+	}
+
+	private TlsSessionStore(File dir) {
+		this.dir = dir;
+		if (!dir.exists() && !dir.mkdirs()) {
+			logger.w("create dir fail: %s", dir);
+		}
+		if (isSupportedNative()) {
+			load();
+		} else {
+			logger.w("not built with OpenSSL, sessions not persisted");
+		}
+		savedVersion = getSessionVersionNative();
+
+		saveTimer = new Timer(true);
+		saveTimer.scheduleAtFixedRate(new TimerTask() {
+
+			@Override
+			public void run() {
+				try {
+					save();
+				} catch (Throwable t) {
+					logger.w("save tls sessions fail", t);
+				}
+			}
+		}, SAVE_INTERVAL_MILLIS, SAVE_INTERVAL_MILLIS);
+	}
+
+	private void load() {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		int loaded = 0;
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(FILE_SUFFIX)) {
+				continue;
+			}
+			String host = name.substring(0, name.length() - FILE_SUFFIX.length());
+			try {
+				if (putSessionNative(host, readFile(file))) {
+					loaded++;
+				} else {
+					// expired or broken
+					file.delete();
+				}
+			} catch (IOException e) {
+				logger.w("read session fail: %s", file, e);
+			}
+		}
+		logger.d("tls sessions restored: %d", loaded);
+	}
+
+	/**
+	 * write sessions changed since last save, called periodically
+	 */
+	public synchronized void save() {
+		long version = getSessionVersionNative();
+		if (version == savedVersion) {
+			return;
+		}
+		String[] hosts = getSessionHostsNative();
+		for (String host : hosts) {
+			if (host.indexOf('/') >= 0 || host.startsWith(".")) {
+				continue;
+			}
+			byte[] session = getSessionNative(host);
+			if (session == null) {
+				continue;
+			}
+			File file = new File(dir, host + FILE_SUFFIX);
+			File tmp = new File(dir, host + FILE_SUFFIX + ".tmp");
+			try {
+				writeFile(tmp, session);
+				if (!tmp.renameTo(file)) {
+					logger.w("rename session file fail: %s", file);
+				}
+			} catch (IOException e) {
+				logger.w("write session fail: %s", file, e);
+				tmp.delete();
+			}
+		}
+		savedVersion = version;
+		evict();
+	}
+
+	private void evict() {
+		File[] files = dir.listFiles();
+		if (files == null || files.length <= MAX_SESSIONS) {
+			return;
+		}
+		// newest first
+		Arrays.sort(files, new Comparator<File>() {
+
+			@Override
+			public int compare(File a, File b) {
+				long diff = b.lastModified() - a.lastModified();
+				return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
+			}
+		});
+		for (int i = MAX_SESSIONS; i < files.length; i++) {
+			files[i].delete();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream((int) file.length());
+			byte[] buf = new byte[4096];
+			int len;
+			while ((len = is.read(buf)) != -1) {
+				os.write(buf, 0, len);
+			}
+			return os.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
+	private static void writeFile(File file, byte[] data) throws IOException {
+		FileOutputStream os = new FileOutputStream(file);
+		try {
+			os.write(data);
+		} finally {
+			os.close();
+		}
+	}
+
+	private static native boolean isSupportedNative();
+
+	/**
+	 *
+	 * @param host
+	 * @param session DER encoded
+	 * @return false if expired or can't be decoded
+	 */
+	private static native boolean putSessionNative(String host, byte[] session);
+
+	private static native String[] getSessionHostsNative();
+
+	/**
+	 *
+	 * @param host
+	 * @return DER encoded, null if not found
+	 */
+	private static native byte[] getSessionNative(String host);
+
+	/**
+	 *
+	 * @return increased when a new session negotiated
+	 */
+	private static native long getSessionVersionNative();
+
+	static {
+		System.loadLibrary("curldroid");
+	}
+}
@@ -0,0 +1,174 @@
+package com.wealoha.libcurldroid;
+
+/**
+ * Timing and connection info of one transfer (curl_easy_getinfo)<br/>
+ *
+ * All times are millis from the start of the transfer, including redirects.
+ *
+ * @see http://curl.haxx.se/libcurl/c/curl_easy_getinfo.html
+ */
+public class TransferStats {
+
+	// index of the double[] filled by native
+	static final int NAMELOOKUP_TIME = 0;
+	static final int CONNECT_TIME = 1;
+	static final int APPCONNECT_TIME = 2;
+	static final int PRETRANSFER_TIME = 3;
+	static final int STARTTRANSFER_TIME = 4;
+	static final int TOTAL_TIME = 5;
+	static final int REDIRECT_TIME = 6;
+	static final int SPEED_DOWNLOAD = 7;
+	static final int SPEED_UPLOAD = 8;
+	static final int SIZE_DOWNLOAD = 9;
+	static final int SIZE_UPLOAD = 10;
+	static final int DOUBLE_INFO_SIZE = 11;
+
+	// index of the long[] filled by native
+	static final int REDIRECT_COUNT = 0;
+	static final int NUM_CONNECTS = 1;
+	static final int LONG_INFO_SIZE = 2;
+
+	private final double nameLookupMillis;
+	private final double connectMillis;
+	private final double appConnectMillis;
+	private final double preTransferMillis;
+	private final double startTransferMillis;
+	private final double totalMillis;
+	private final double redirectMillis;
+	private final long redirectCount;
+	private final double speedDownload;
+	private final double speedUpload;
+	private final long sizeDownload;
+	private final long sizeUpload;
+	private final long numConnects;
+	private final String primaryIp;
+
+	/**
+	 *
+	 * @param doubleInfo seconds or bytes, by index above
+	 * @param longInfo
+	 * @param primaryIp
+	 */
+	TransferStats(double[] doubleInfo, long[] longInfo, String primaryIp) {
+		super();
+		this.nameLookupMillis = doubleInfo[NAMELOOKUP_TIME] * 1000;
+		this.connectMillis = doubleInfo[CONNECT_TIME] * 1000;
+		this.appConnectMillis = doubleInfo[APPCONNECT_TIME] * 1000;
+		this.preTransferMillis = doubleInfo[PRETRANSFER_TIME] * 1000;
+		this.startTransferMillis = doubleInfo[STARTTRANSFER_TIME] * 1000;
+		this.totalMillis = doubleInfo[TOTAL_TIME] * 1000;
+		this.redirectMillis = doubleInfo[REDIRECT_TIME] * 1000;
+		this.speedDownload = doubleInfo[SPEED_DOWNLOAD];
+		this.speedUpload = doubleInfo[SPEED_UPLOAD];
+		this.sizeDownload = (long) doubleInfo[SIZE_DOWNLOAD];
+		this.sizeUpload = (long) doubleInfo[SIZE_UPLOAD];
+		this.redirectCount = longInfo[REDIRECT_COUNT];
+		this.numConnects = longInfo[NUM_CONNECTS];
+		this.primaryIp = primaryIp;
+	}
+
+	/**
+	 *
+	 * @return dns resolve done
+	 */
+	public double getNameLookupMillis() {
+		return nameLookupMillis;
+	}
+
+	/**
+	 *
+	 * @return tcp connected (to host or proxy)
+	 */
+	public double getConnectMillis() {
+		return connectMillis;
+	}
+
+	/**
+	 *
+	 * @return TLS handshake done, 0 if not https
+	 */
+	public double getAppConnectMillis() {
+		return appConnectMillis;
+	}
+
+	public double getPreTransferMillis() {
+		return preTransferMillis;
+	}
+
+	/**
+	 *
+	 * @return first byte of response received
+	 */
+	public double getStartTransferMillis() {
+		return startTransferMillis;
+	}
+
+	public double getTotalMillis() {
+		return totalMillis;
+	}
+
+	/**
+	 *
+	 * @return time of all redirect steps before the final transaction
+	 */
+	public double getRedirectMillis() {
+		return redirectMillis;
+	}
+
+	public long getRedirectCount() {
+		return redirectCount;
+	}
+
+	/**
+	 *
+	 * @return bytes/second
+	 */
+	public double getSpeedDownload() {
+		return speedDownload;
+	}
+
+	/**
+	 *
+	 * @return bytes/second
+	 */
+	public double getSpeedUpload() {
+		return speedUpload;
+	}
+
+	public long getSizeDownload() {
+		return sizeDownload;
+	}
+
+	public long getSizeUpload() {
+		return sizeUpload;
+	}
+
+	/**
+	 *
+	 * @return new connections created, 0 means a kept-alive connection reused
+	 */
+	public long getNumConnects() {
+		return numConnects;
+	}
+
+	public boolean isConnectionReused() {
+		return numConnects == 0;
+	}
+
+	/**
+	 *
+	 * @return ip of the last connection, may be null
+	 */
+	public String getPrimaryIp() {
+		return primaryIp;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TransferStats [ip=%s, dns=%.1fms, connect=%.1fms, tls=%.1fms, pretransfer=%.1fms, "
+				+ "starttransfer=%.1fms, total=%.1fms, redirect=%d/%.1fms, connects=%d, down=%d(%.0fB/s), up=%d(%.0fB/s)]",
+				primaryIp, nameLookupMillis, connectMillis, appConnectMillis, preTransferMillis,
+				startTransferMillis, totalMillis, redirectCount, redirectMillis, numConnects,
+				sizeDownload, speedDownload, sizeUpload, speedUpload);
+	}
+}
@@ -11,9 +11,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -44,7 +46,10 @@ import com.wealoha.libcurldroid.util.StringUtils;
  * When getting a file by key, first we get meta from memory, if not hit, warm meta from disk.
  * Then read InputStream by meta separately.<br/>
  * 
- * File(s) can be deleted by FileManager.
+ * File(s) can be deleted by FileManager.<br/>
+ * 
+ * A key may have a partial entry too (body of an interrupted download and its validators),
+ * see {@link #getPartial(String)}, evicted and removed together with the key.
  * 
  * @author javamonk
  * @createTime 2015-02-05 17:48:18
@@ -61,6 +66,8 @@ public class DiskCache implements Cache {
 	private final long evictIntervalMillis;
 	private final Timer accessTimeUpdateTimer;
 	private final Timer evictTimer;
+	// keys of partial entries being downloaded
+	private final Set<String> partialInUse = new HashSet<String>();
 	
 	private long lastWrite;
 	private long lastEvict;
@@ -268,7 +275,7 @@ public class DiskCache implements Cache {
 		}, evictIntervalMillis, evictIntervalMillis);
 	}
 	
-	private final static Pattern PATTERN_FILE = Pattern.compile("(\\w+)(?:\\.meta){0,1}$");
+	private final static Pattern PATTERN_FILE = Pattern.compile("(\\w+)(?:\\.part){0,1}(?:\\.meta){0,1}$");
 	
 	private void getTotalBytes(File path, AtomicLong currentTotal, Map<String, Long> accessTimeMap, SortedMap<String, Long> fileSet) {
 		if (path.isDirectory()) {
@@ -473,13 +480,16 @@ public class DiskCache implements Cache {
 	
 	
 	private void writeMeta(CacheFile cacheFile) throws IOException {
+		writeMeta(cacheFile, new File(getMetaFilePath(cacheFile.getKey())));
+	}
+	
+	private void writeMeta(CacheFile cacheFile, File metaFile) throws IOException {
 		String key = cacheFile.getKey();
 		File targetDir = new File(getFileDir(key));
 		if (!targetDir.exists()) {
 			targetDir.mkdirs();
 		}
 		
-		File metaFile = new File(getMetaFilePath(key));
 		FileOutputStream metaOs = new FileOutputStream(metaFile);
 		try {
 			metaOs.write(encodeMeta(cacheFile).getBytes());
@@ -504,10 +514,127 @@ public class DiskCache implements Cache {
 			}
 			fileMap.remove(key);
 			lastAccessTimeMap.remove(key);
+			removePartial(key);
 		}
 		
 	}
 	
+	/**
+	 * partial entry of an interrupted download
+	 * 
+	 * @param key
+	 * @return null if not exist, {@link CacheFile#getFileSize()} is the length of {@link #getPartialFile(String)}
+	 * @throws IOException
+	 */
+	public CacheFile getPartial(String key) throws IOException {
+		synchronized (key.intern()) {
+			File dataFile = new File(getPartialFilePath(key));
+			CacheFile meta = decodeMeta(new File(getPartialMetaFilePath(key)));
+			if (meta == null || !dataFile.exists()) {
+				return null;
+			}
+			// appended since meta written
+			return new CacheFile(key, dataFile.length(), meta.getLastAccessMillis(), meta.getCreateTimeMillis(), meta.getMeta());
+		}
+	}
+	
+	/**
+	 * data file of the partial entry, written by downloader directly
+	 * 
+	 * @param key
+	 * @return may not exist
+	 */
+	public File getPartialFile(String key) {
+		File targetDir = new File(getFileDir(key));
+		if (!targetDir.exists()) {
+			targetDir.mkdirs();
+		}
+		return new File(getPartialFilePath(key));
+	}
+	
+	/**
+	 * save meta (validators) of the partial entry, data already written to {@link #getPartialFile(String)}
+	 * 
+	 * @param key
+	 * @param metaMap
+	 * @throws IOException
+	 */
+	public void setPartial(String key, Map<String, String> metaMap) throws IOException {
+		synchronized (key.intern()) {
+			File dataFile = new File(getPartialFilePath(key));
+			long now = System.currentTimeMillis();
+			CacheFile cacheFile = new CacheFile(key, dataFile.length(), now, now, metaMap);
+			logger.d("partial file: %s %d", key, dataFile.length());
+			writeMeta(cacheFile, new File(getPartialMetaFilePath(key)));
+			lastWrite = now;
+		}
+	}
+	
+	/**
+	 * partial entry completed, becomes the entry of key (previous one replaced)
+	 * 
+	 * @param key
+	 * @param metaMap
+	 * @return
+	 * @throws IOException
+	 */
+	public CacheFile commitPartial(String key, Map<String, String> metaMap) throws IOException {
+		synchronized (key.intern()) {
+			File partFile = new File(getPartialFilePath(key));
+			File dataFile = new File(getFilePath(key));
+			if (dataFile.exists()) {
+				dataFile.delete();
+			}
+			if (!partFile.renameTo(dataFile)) {
+				throw new IOException("rename partial file fail: " + partFile.getAbsolutePath());
+			}
+			new File(getPartialMetaFilePath(key)).delete();
+			
+			long now = System.currentTimeMillis();
+			CacheFile cacheFile = new CacheFile(key, dataFile.length(), now, now, metaMap);
+			logger.d("commit partial file: %s %d", key, dataFile.length());
+			writeMeta(cacheFile);
+			fileMap.put(key, cacheFile);
+			lastWrite = now;
+			return cacheFile;
+		}
+	}
+	
+	/**
+	 * wait until no other download writes the partial entry of key, then hold it until {@link #unlockPartial(String)}
+	 * 
+	 * @param key
+	 * @throws InterruptedException
+	 */
+	public void lockPartial(String key) throws InterruptedException {
+		synchronized (partialInUse) {
+			while (partialInUse.contains(key)) {
+				partialInUse.wait();
+			}
+			partialInUse.add(key);
+		}
+	}
+	
+	public void unlockPartial(String key) {
+		synchronized (partialInUse) {
+			partialInUse.remove(key);
+			partialInUse.notifyAll();
+		}
+	}
+	
+	public void removePartial(String key) {
+		synchronized (key.intern()) {
+			File dataFile = new File(getPartialFilePath(key));
+			File metaFile = new File(getPartialMetaFilePath(key));
+			if (metaFile.exists()) {
+				metaFile.delete();
+			}
+			if (dataFile.exists()) {
+				dataFile.delete();
+			}
+		}
+	}
+	
 	private CacheFile getCacheFile(String key) throws IOException {
 		// -read from memory
 		CacheFile cacheFile = fileMap.get(key);
@@ -578,6 +705,14 @@ public class DiskCache implements Cache {
 		return getFilePath(key) + ".meta";
 	}
 	
+	private String getPartialFilePath(String key) {
+		return getFilePath(key) + ".part";
+	}
+	
+	private String getPartialMetaFilePath(String key) {
+		return getPartialFilePath(key) + ".meta";
+	}
+	
 	private String encodeMeta(CacheFile file) {
 		StringBuilder sb = new StringBuilder() //
 			.append("key=" + file.getKey() + "\n") //
@@ -1,5 +1,12 @@
 package com.wealoha.libcurldroid.easy;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.wealoha.libcurldroid.Curl.StreamReadCallback;
+import com.wealoha.libcurldroid.util.Logger;
+
 /**
  * 
  * 
@@ -8,10 +15,15 @@ package com.wealoha.libcurldroid.easy;
  */
 public class MultiPart {
 	
+	private static final Logger logger = Logger.getLogger(MultiPart.class);
+	
 	private final String name;
 	private final String filename;
 	private final String contentType;
 	private final byte[] content;
+	private final File file;
+	private final InputStream stream;
+	private final long contentLength;
 
 	/**
 	 * 
@@ -26,6 +38,48 @@ public class MultiPart {
 		this.filename = filename;
 		this.contentType = contentType;
 		this.content = content;
+		this.file = null;
+		this.stream = null;
+		this.contentLength = content.length;
+	}
+	
+	/**
+	 * content read by libcurl from file while sending
+	 * 
+	 * @param name required
+	 * @param filename if null, name of the file
+	 * @param contentType
+	 * @param file required
+	 */
+	public MultiPart(String name, String filename, String contentType, File file) {
+		super();
+		this.name = name;
+		this.filename = filename;
+		this.contentType = contentType;
+		this.content = null;
+		this.file = file;
+		this.stream = null;
+		this.contentLength = file.length();
+	}
+	
+	/**
+	 * content read from stream while sending
+	 * 
+	 * @param name required
+	 * @param filename
+	 * @param contentType
+	 * @param stream required, not closed after perform
+	 * @param length required, bytes will be read from stream
+	 */
+	public MultiPart(String name, String filename, String contentType, InputStream stream, long length) {
+		super();
+		this.name = name;
+		this.filename = filename;
+		this.contentType = contentType;
+		this.content = null;
+		this.file = null;
+		this.stream = stream;
+		this.contentLength = length;
 	}
 
 	public String getName() {
@@ -48,7 +102,47 @@ public class MultiPart {
 		return contentType;
 	}
 	
+	/**
+	 * 
+	 * @return null if file or stream part
+	 */
 	public byte[] getContent() {
 		return content;
 	}
+	
+	/**
+	 * 
+	 * @return null if not a file part
+	 */
+	public String getFilePath() {
+		return file != null ? file.getAbsolutePath() : null;
+	}
+	
+	/**
+	 * 
+	 * @return null if not a stream part
+	 */
+	public StreamReadCallback getStreamCallback() {
+		if (stream == null) {
+			return null;
+		}
+		return new StreamReadCallback() {
+			
+			@Override
+			public int writeData(byte[] buffer, int length) {
+				try {
+					int read = stream.read(buffer, 0, length);
+					// end of stream
+					return read < 0 ? 0 : read;
+				} catch (IOException e) {
+					logger.w("read part fail: %s", name, e);
+					return -1;
+				}
+			}
+		};
+	}
+	
+	public long getContentLength() {
+		return contentLength;
+	}
 }
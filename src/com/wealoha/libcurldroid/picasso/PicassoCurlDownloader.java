@@ -19,13 +19,20 @@ import android.util.Log;
 import com.squareup.picasso.Downloader;
 import com.squareup.picasso.NetworkPolicy;
 import com.wealoha.libcurldroid.Constant;
+import com.wealoha.libcurldroid.CurlCancelledException;
+import com.wealoha.libcurldroid.CurlException;
 import com.wealoha.libcurldroid.CurlHttp;
+import com.wealoha.libcurldroid.CurlMulti;
+import com.wealoha.libcurldroid.CurlPool;
+import com.wealoha.libcurldroid.CurlScheduler;
+import com.wealoha.libcurldroid.CurlScheduler.Priority;
 import com.wealoha.libcurldroid.Result;
 import com.wealoha.libcurldroid.cache.Cache;
 import com.wealoha.libcurldroid.cache.CacheFile;
 import com.wealoha.libcurldroid.cache.DiskCache;
 import com.wealoha.libcurldroid.third.CurlHttpCallback;
 import com.wealoha.libcurldroid.util.Logger;
+import com.wealoha.libcurldroid.util.SingleFlight;
 import com.wealoha.libcurldroid.util.StringUtils;
 
 /**
@@ -51,6 +58,16 @@ public class PicassoCurlDownloader implements Downloader {
 	
 	private CurlHttpCallback callback;
 	
+	private CurlPool pool = CurlPool.getDefault();
+	
+	private CurlMulti multi;
+	
+	private CurlScheduler scheduler = CurlScheduler.getDefault();
+	
+	private Priority priority = Priority.LOW;
+	
+	// same url loaded by several targets at once downloads once
+	private final SingleFlight<Result> singleFlight = new SingleFlight<Result>();
 	
 	/**
 	 * Default downloader, if you need cache call setCache
@@ -70,6 +87,48 @@ public class PicassoCurlDownloader implements Downloader {
 		return this;
 	}
 	
+	/**
+	 * set handle pool, default {@link CurlPool#getDefault()}
+	 * 
+	 * @param pool null: new handle for every request
+	 * @return
+	 */
+	public PicassoCurlDownloader pool(CurlPool pool) {
+		this.pool = pool;
+		return this;
+	}
+	
+	/**
+	 * run transfers on a {@link CurlMulti} loop thread, for example {@link CurlMulti#getDefault()}
+	 * 
+	 * @param multi null: perform on calling thread(default)
+	 * @return
+	 */
+	public PicassoCurlDownloader multi(CurlMulti multi) {
+		this.multi = multi;
+		return this;
+	}
+	
+	/**
+	 * requests wait for a slot of scheduler, default {@link CurlScheduler#getDefault()} with {@link Priority#LOW} (image loads wait for api calls)
+	 * 
+	 * @param scheduler null: perform at once
+	 * @param priority
+	 * @return
+	 */
+	public PicassoCurlDownloader scheduler(CurlScheduler scheduler, Priority priority) {
+		this.scheduler = scheduler;
+		this.priority = priority;
+		return this;
+	}
+	
+	private Result perform(CurlHttp curlHttp) throws CurlException {
+		if (scheduler != null) {
+			return scheduler.perform(curlHttp, multi, priority);
+		}
+		return curlHttp.perform(multi);
+	}
+	
 	/**
 	 * set cache, you can use {@link DiskCache}
 	 * 
@@ -111,7 +170,7 @@ public class PicassoCurlDownloader implements Downloader {
 					}
 					String lastModified = formatHttpDate(checkTime);
 					
-					Result result = getUrlManualDealRedirect(url, lastModified);
+					Result result = download(url, lastModified);
 					
 					if (result.getStatus() == 304) {
 						logger.d("file not modified, return cached: %s", url);
@@ -119,7 +178,6 @@ public class PicassoCurlDownloader implements Downloader {
 					} else if (result.getStatus() == 200) {
 						logger.d("file modified, replace cached: %s ", url);
 						byte[] body = result.getDecodedBody();
-						cacheResult(url, result);
 						return new Response(new ByteArrayInputStream(body), false, body.length);
 					}
 				}
@@ -134,11 +192,10 @@ public class PicassoCurlDownloader implements Downloader {
 		}
 
 		logger.v("download url: %s", url);
-		Result result = getUrlManualDealRedirect(url, null);
+		Result result = download(url, null);
 		
 		if (result.getStatus() == 200) {
 			byte[] body = result.getDecodedBody();
-			cacheResult(url, result);
 			return new Response(new ByteArrayInputStream(body), false, body.length);
 		} else {
 			throw new IOException("load url fail: " + url + " " + result.getStatusLine());
@@ -153,12 +210,45 @@ public class PicassoCurlDownloader implements Downloader {
 		return Long.valueOf(str);
 	}
 	
+	/**
+	 * concurrent identical downloads share one transfer, cached once if 200.
+	 * A caller waiting on a transfer cancelled by its own caller (interrupted) tries again
+	 * 
+	 * @param url
+	 * @param headerIfModifideSince
+	 * @return
+	 * @throws IOException
+	 */
+	private Result download(final String url, final String headerIfModifideSince) throws IOException {
+		String key = "GET " + url + (headerIfModifideSince != null ? "\nIf-Modified-Since: " + headerIfModifideSince : "");
+		while (true) {
+			try {
+				return singleFlight.execute(key, new SingleFlight.Call<Result>() {
+					
+					@Override
+					public Result call() throws IOException {
+						Result result = getUrlManualDealRedirect(url, headerIfModifideSince);
+						if (result.getStatus() == 200) {
+							cacheResult(url, result);
+						}
+						return result;
+					}
+				});
+			} catch (CurlCancelledException e) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+				logger.v("shared download cancelled, retry: %s", url);
+			}
+		}
+	}
+	
 	private Result getUrlManualDealRedirect(String url, String headerIfModifideSince) throws IOException {
 		boolean tryNext = false;
 		
 		Result result;
 		do {
-			CurlHttp curlHttp = CurlHttp.newInstance();
+			CurlHttp curlHttp = CurlHttp.newInstance(pool);
 			// set curl
 			if (callback != null) {
 				callback.afterInit(curlHttp, url);
@@ -170,7 +260,7 @@ public class PicassoCurlDownloader implements Downloader {
 			}
 			
 			logger.v("trying download data from url: %s", url);
-			result = curlHttp.getUrl(url).perform();
+			result = perform(curlHttp.getUrl(url));
 			
 			if (result.getStatus() == 301 || result.getStatus() == 302) {
 				String nextUrl = result.getHeader("Location");
@@ -317,6 +407,9 @@ public class PicassoCurlDownloader implements Downloader {
 
 	@Override
 	public void shutdown() {
+		if (pool != null && pool != CurlPool.getDefault()) {
+			pool.close();
+		}
 	}
 
 }
@@ -1,7 +1,9 @@
 package com.wealoha.libcurldroid.retrofit;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -12,13 +14,20 @@ import retrofit.client.Header;
 import retrofit.client.Request;
 import retrofit.client.Response;
 import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedFile;
 import retrofit.mime.TypedInput;
 import retrofit.mime.TypedOutput;
 import android.util.Log;
 
+import com.wealoha.libcurldroid.CurlException;
 import com.wealoha.libcurldroid.CurlHttp;
+import com.wealoha.libcurldroid.CurlMulti;
+import com.wealoha.libcurldroid.CurlPool;
+import com.wealoha.libcurldroid.CurlScheduler;
+import com.wealoha.libcurldroid.CurlScheduler.Priority;
 import com.wealoha.libcurldroid.Result;
 import com.wealoha.libcurldroid.third.CurlHttpCallback;
+import com.wealoha.libcurldroid.util.SingleFlight;
 
 /**
  * 
@@ -31,6 +40,17 @@ public class RetrofitCurlClient implements Client {
 	private static final String TAG = RetrofitCurlClient.class.getSimpleName();
 	
 	private CurlHttpCallback callback;
+	
+	private CurlPool pool = CurlPool.getDefault();
+	
+	private CurlMulti multi;
+	
+	private CurlScheduler scheduler = CurlScheduler.getDefault();
+	
+	private Priority priority = Priority.HIGH;
+	
+	// null: not coalesced
+	private SingleFlight<Result> singleFlight;
 		
 	public RetrofitCurlClient() {
 	}
@@ -40,30 +60,90 @@ public class RetrofitCurlClient implements Client {
 		return this;
 	}
 	
+	/**
+	 * set handle pool, default {@link CurlPool#getDefault()}
+	 * 
+	 * @param pool null: new handle for every request
+	 * @return
+	 */
+	public RetrofitCurlClient pool(CurlPool pool) {
+		this.pool = pool;
+		return this;
+	}
+	
+	/**
+	 * run transfers on a {@link CurlMulti} loop thread, for example {@link CurlMulti#getDefault()}
+	 * 
+	 * @param multi null: perform on calling thread(default)
+	 * @return
+	 */
+	public RetrofitCurlClient multi(CurlMulti multi) {
+		this.multi = multi;
+		return this;
+	}
+	
+	/**
+	 * requests wait for a slot of scheduler, default {@link CurlScheduler#getDefault()} with {@link Priority#HIGH} (api calls start before image loads)
+	 * 
+	 * @param scheduler null: perform at once
+	 * @param priority
+	 * @return
+	 */
+	public RetrofitCurlClient scheduler(CurlScheduler scheduler, Priority priority) {
+		this.scheduler = scheduler;
+		this.priority = priority;
+		return this;
+	}
+	
+	/**
+	 * concurrent identical GETs (same url and headers) share one transfer and result
+	 * 
+	 * @param yes default false
+	 * @return
+	 */
+	public RetrofitCurlClient singleFlight(boolean yes) {
+		this.singleFlight = yes ? new SingleFlight<Result>() : null;
+		return this;
+	}
+	
+	private Result perform(CurlHttp curlHttp) throws CurlException {
+		if (scheduler != null) {
+			return scheduler.perform(curlHttp, multi, priority);
+		}
+		return curlHttp.perform(multi);
+	}
+	
 	@Override
-	public Response execute(Request request) throws IOException {
-		List<Header> headers = request.getHeaders();
-		
-		CurlHttp curlHttp = CurlHttp.newInstance();
-		
-		if (callback != null) {
-			callback.afterInit(curlHttp, request.getUrl());
+	public Response execute(final Request request) throws IOException {
+		if (singleFlight != null && "get".equalsIgnoreCase(request.getMethod())) {
+			Result result = singleFlight.execute(getFlightKey(request), new SingleFlight.Call<Result>() {
+				
+				@Override
+				public Result call() throws IOException {
+					return perform(newCurlHttp(request).getUrl(request.getUrl()));
+				}
+			});
+			return convertResult(request, result);
 		}
 		
-		if (headers != null && headers.size() > 0) {
-			for (Header header : headers) {
-				Log.v(TAG, "add header: " + header.getName() + " " + header.getValue());
-				curlHttp.addHeader(header.getName(), header.getValue());
-			}
-		}
+		CurlHttp curlHttp = newCurlHttp(request);
 		
+		InputStream bodyStream = null;
 		if ("get".equalsIgnoreCase(request.getMethod())) {
 			// get
 			curlHttp.getUrl(request.getUrl());
 		} else {
 			// post
 			TypedOutput body = request.getBody();
-			if (body != null) {
+			if (body instanceof TypedFile) {
+				// streamed from disk while sending
+				Log.v(TAG, "set request body from file");
+				bodyStream = new FileInputStream(((TypedFile) body).file());
+				curlHttp.setBody(body.mimeType(), bodyStream, body.length());
+			} else if (body instanceof TypedByteArray) {
+				Log.v(TAG, "set request body");
+				curlHttp.setBody(body.mimeType(), ((TypedByteArray) body).getBytes());
+			} else if (body != null) {
 				Log.v(TAG, "set request body");
 				ByteArrayOutputStream os = new ByteArrayOutputStream((int) body.length());
 				body.writeTo(os);
@@ -71,7 +151,42 @@ public class RetrofitCurlClient implements Client {
 			}
 			curlHttp.postUrl(request.getUrl());
 		}
-		return convertResult(request, curlHttp.perform());
+		try {
+			return convertResult(request, perform(curlHttp));
+		} finally {
+			if (bodyStream != null) {
+				bodyStream.close();
+			}
+		}
+	}
+	
+	private CurlHttp newCurlHttp(Request request) {
+		List<Header> headers = request.getHeaders();
+		
+		CurlHttp curlHttp = CurlHttp.newInstance(pool);
+		
+		if (callback != null) {
+			callback.afterInit(curlHttp, request.getUrl());
+		}
+		
+		if (headers != null && headers.size() > 0) {
+			for (Header header : headers) {
+				Log.v(TAG, "add header: " + header.getName() + " " + header.getValue());
+				curlHttp.addHeader(header.getName(), header.getValue());
+			}
+		}
+		return curlHttp;
+	}
+	
+	private String getFlightKey(Request request) {
+		StringBuilder key = new StringBuilder("GET ").append(request.getUrl());
+		List<Header> headers = request.getHeaders();
+		if (headers != null) {
+			for (Header header : headers) {
+				key.append('\n').append(header.getName()).append(": ").append(header.getValue());
+			}
+		}
+		return key.toString();
 	}
 	
 	private Response convertResult(Request request, Result result) throws IOException {
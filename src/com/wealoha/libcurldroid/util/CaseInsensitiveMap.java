@@ -38,4 +38,14 @@ public class CaseInsensitiveMap<K, V> extends HashMap {
 	public Object get(Object key) {
 		return super.get(normalizeKey(key));
 	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return super.containsKey(normalizeKey(key));
+	}
+	
+	@Override
+	public Object remove(Object key) {
+		return super.remove(normalizeKey(key));
+	}
 }
@@ -0,0 +1,178 @@
+package com.wealoha.libcurldroid.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+
+/**
+ * Bounded queue of byte chunks from a writer thread to an {@link InputStream} read on another thread.<br/>
+ *
+ * Chunks are queued as is (never copied), {@link #write(byte[])} blocks while bytes not read exceed capacity.
+ *
+ * <pre>
+ * ChunkPipe pipe = new ChunkPipe(64 * 1024);
+ * // writer thread
+ * pipe.write(chunk);
+ * pipe.close(); // or pipe.fail(e)
+ * // reader thread
+ * InputStream is = pipe.getInputStream();
+ * </pre>
+ */
+public class ChunkPipe {
+
+	private final int capacity;
+
+	// guarded by this
+	private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+	// read position in the first chunk
+	private int offset;
+	private int queuedBytes;
+	private boolean closed;
+	private IOException failure;
+	private boolean aborted;
+
+	private final InputStream inputStream = new InputStream() {
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return ChunkPipe.this.read(b, off, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			synchronized (ChunkPipe.this) {
+				return queuedBytes;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			abort();
+		}
+	};
+
+	/**
+	 *
+	 * @param capacity bytes not read, a chunk larger than it is queued alone
+	 */
+	public ChunkPipe(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must > 0");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * queue a chunk, wait for room
+	 *
+	 * @param chunk not touched after
+	 * @return false if reader closed (aborted)
+	 * @throws InterruptedIOException
+	 */
+	public synchronized boolean write(byte[] chunk) throws InterruptedIOException {
+		if (closed) {
+			throw new IllegalStateException("pipe closed");
+		}
+		try {
+			while (!aborted && queuedBytes > 0 && queuedBytes + chunk.length > capacity) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for reader");
+		}
+		if (aborted) {
+			return false;
+		}
+		if (chunk.length > 0) {
+			chunks.add(chunk);
+			queuedBytes += chunk.length;
+			notifyAll();
+		}
+		return true;
+	}
+
+	/**
+	 * no more chunks, reader gets end of stream after queued ones
+	 */
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * no more chunks, reader gets e after queued ones
+	 *
+	 * @param e
+	 */
+	public synchronized void fail(IOException e) {
+		failure = e;
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * drop queued chunks, writer and reader refused
+	 */
+	public synchronized void abort() {
+		aborted = true;
+		chunks.clear();
+		queuedBytes = 0;
+		offset = 0;
+		notifyAll();
+	}
+
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	private synchronized int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		try {
+			while (!aborted && chunks.isEmpty() && !closed) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for writer");
+		}
+		if (aborted) {
+			throw new IOException("pipe closed");
+		}
+		if (chunks.isEmpty()) {
+			if (failure != null) {
+				throw failure;
+			}
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+
+		int n = 0;
+		while (n < len && !chunks.isEmpty()) {
+			byte[] chunk = chunks.getFirst();
+			int count = Math.min(len - n, chunk.length - offset);
+			System.arraycopy(chunk, offset, b, off + n, count);
+			n += count;
+			offset += count;
+			if (offset == chunk.length) {
+				chunks.removeFirst();
+				offset = 0;
+			}
+		}
+		queuedBytes -= n;
+		notifyAll();
+		return n;
+	}
+}
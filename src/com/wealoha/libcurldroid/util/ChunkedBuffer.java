@@ -0,0 +1,245 @@
+package com.wealoha.libcurldroid.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body sink kept as a list of fixed-size chunks, never doubled and copied while growing
+ * (as {@link java.io.ByteArrayOutputStream} does).<br/>
+ *
+ * Pre-sized by {@link #expect(long)} (Content-Length) the body is kept in a single chunk,
+ * {@link #toByteArray()} returns it without copy.
+ * Read by {@link #getInputStream()} or {@link #getByteBuffers()} without copy.
+ *
+ * <pre>
+ * ChunkedBuffer buffer = new ChunkedBuffer();
+ * buffer.expect(contentLength);
+ * buffer.write(data, 0, length);
+ * InputStream is = buffer.getInputStream();
+ * </pre>
+ *
+ * Not thread safe.
+ */
+public class ChunkedBuffer extends OutputStream {
+
+	private static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+	// larger Content-Length not trusted, chunks allocated as received
+	private static final long MAX_EXPECT_SIZE = 16 * 1024 * 1024;
+
+	private final int chunkSize;
+	private final List<byte[]> chunks = new ArrayList<byte[]>();
+	// bytes used in the last chunk
+	private int lastLength;
+	private int size;
+
+	public ChunkedBuffer() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 *
+	 * @param chunkSize default 16K
+	 */
+	public ChunkedBuffer(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must > 0");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * a buffer of data, not copied
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static ChunkedBuffer wrap(byte[] data) {
+		ChunkedBuffer buffer = new ChunkedBuffer();
+		if (data != null && data.length > 0) {
+			buffer.chunks.add(data);
+			buffer.lastLength = data.length;
+			buffer.size = data.length;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Allocate the first chunk of length, ignored if something written already
+	 *
+	 * @param length bytes expected, more are still accepted
+	 */
+	public void expect(long length) {
+		if (size > 0 || length <= 0 || length > MAX_EXPECT_SIZE) {
+			return;
+		}
+		chunks.clear();
+		chunks.add(new byte[(int) length]);
+		lastLength = 0;
+	}
+
+	@Override
+	public void write(int b) {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0) {
+			byte[] last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+			if (last == null || lastLength == last.length) {
+				last = new byte[chunkSize];
+				chunks.add(last);
+				lastLength = 0;
+			}
+			int n = Math.min(len, last.length - lastLength);
+			System.arraycopy(b, off, last, lastLength, n);
+			lastLength += n;
+			size += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Chunks merged into one array (kept, later calls don't copy again),
+	 * no copy if already in a single full chunk (pre-sized exactly)
+	 *
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		if (chunks.size() == 1 && lastLength == chunks.get(0).length) {
+			return chunks.get(0);
+		}
+		byte[] data = new byte[size];
+		int offset = 0;
+		for (int i = 0; i < chunks.size(); i++) {
+			int length = getLength(i);
+			System.arraycopy(chunks.get(i), 0, data, offset, length);
+			offset += length;
+		}
+		chunks.clear();
+		if (size > 0) {
+			chunks.add(data);
+		}
+		lastLength = size;
+		return data;
+	}
+
+	/**
+	 *
+	 * @return read-only views of chunks in order
+	 */
+	public ByteBuffer[] getByteBuffers() {
+		ByteBuffer[] buffers = new ByteBuffer[chunks.size()];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = ByteBuffer.wrap(chunks.get(i), 0, getLength(i)).asReadOnlyBuffer();
+		}
+		return buffers;
+	}
+
+	/**
+	 *
+	 * @return reads chunks, bytes written after not seen
+	 */
+	public InputStream getInputStream() {
+		final List<byte[]> chunks = new ArrayList<byte[]>(this.chunks);
+		final int lastLength = this.lastLength;
+		final int size = this.size;
+		return new InputStream() {
+
+			private int index;
+			private int offset;
+			private int mark;
+			private int markIndex;
+			private int markOffset;
+			private int read;
+
+			@Override
+			public int read() {
+				byte[] b = new byte[1];
+				int n = read(b, 0, 1);
+				return n == -1 ? -1 : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (off < 0 || len < 0 || off + len > b.length) {
+					throw new IndexOutOfBoundsException();
+				}
+				if (len == 0) {
+					return 0;
+				}
+				int n = 0;
+				while (n < len && index < chunks.size()) {
+					int length = index == chunks.size() - 1 ? lastLength : chunks.get(index).length;
+					int count = Math.min(len - n, length - offset);
+					System.arraycopy(chunks.get(index), offset, b, off + n, count);
+					n += count;
+					offset += count;
+					if (offset == length) {
+						index++;
+						offset = 0;
+					}
+				}
+				read += n;
+				return n == 0 ? -1 : n;
+			}
+
+			@Override
+			public long skip(long n) {
+				long skipped = 0;
+				while (skipped < n && index < chunks.size()) {
+					int length = index == chunks.size() - 1 ? lastLength : chunks.get(index).length;
+					int count = (int) Math.min(n - skipped, length - offset);
+					skipped += count;
+					offset += count;
+					if (offset == length) {
+						index++;
+						offset = 0;
+					}
+				}
+				read += skipped;
+				return skipped;
+			}
+
+			@Override
+			public int available() {
+				return size - read;
+			}
+
+			@Override
+			public boolean markSupported() {
+				return true;
+			}
+
+			@Override
+			public void mark(int readlimit) {
+				mark = read;
+				markIndex = index;
+				markOffset = offset;
+			}
+
+			@Override
+			public void reset() {
+				read = mark;
+				index = markIndex;
+				offset = markOffset;
+			}
+		};
+	}
+
+	private int getLength(int index) {
+		return index == chunks.size() - 1 ? lastLength : chunks.get(index).length;
+	}
+}
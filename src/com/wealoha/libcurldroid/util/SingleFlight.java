@@ -0,0 +1,106 @@
+package com.wealoha.libcurldroid.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Concurrent calls with the same key share one execution, all callers get the same result (or exception).<br/>
+ *
+ * The first caller runs the call on its own thread, callers arrived before it's done wait for it.
+ * Nothing is cached after done.
+ *
+ * <pre>
+ * SingleFlight&lt;Result&gt; flight = new SingleFlight&lt;Result&gt;();
+ * Result result = flight.execute("GET " + url, new Call&lt;Result&gt;() {
+ *     public Result call() throws IOException {
+ *         return CurlHttp.newInstance().getUrl(url).perform();
+ *     }
+ * });
+ * </pre>
+ */
+public class SingleFlight<V> {
+
+	private static final Logger logger = Logger.getLogger(SingleFlight.class);
+
+	private final Map<String, FutureTask<V>> inFlightMap = new HashMap<String, FutureTask<V>>();
+
+	public interface Call<V> {
+
+		public V call() throws IOException;
+	}
+
+	/**
+	 *
+	 * @param key calls with equal key are identical
+	 * @param call run if no identical call in flight
+	 * @return
+	 * @throws IOException thrown by call
+	 * @throws InterruptedIOException interrupted while waiting for another caller
+	 */
+	public V execute(String key, final Call<V> call) throws IOException {
+		FutureTask<V> task;
+		boolean first = false;
+		synchronized (inFlightMap) {
+			task = inFlightMap.get(key);
+			if (task == null) {
+				task = new FutureTask<V>(new Callable<V>() {
+
+					@Override
+					public V call() throws Exception {
+						return call.call();
+					}
+				});
+				inFlightMap.put(key, task);
+				first = true;
+			}
+		}
+
+		if (first) {
+			try {
+				task.run();
+			} finally {
+				synchronized (inFlightMap) {
+					inFlightMap.remove(key);
+				}
+			}
+		} else {
+			logger.v("join in flight: %s", key);
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for: " + key);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			IOException ioe = new IOException("call fail: " + key);
+			ioe.initCause(cause);
+			throw ioe;
+		}
+	}
+
+	/**
+	 *
+	 * @return calls running
+	 */
+	public int getInFlightCount() {
+		synchronized (inFlightMap) {
+			return inFlightMap.size();
+		}
+	}
+}